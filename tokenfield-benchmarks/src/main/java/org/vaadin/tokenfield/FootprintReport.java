@@ -0,0 +1,182 @@
+package org.vaadin.tokenfield;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import org.vaadin.tokenfield.TokenField.TokenRenderMode;
+
+import com.vaadin.v7.data.Container;
+
+/**
+ * Reports the memory footprint of {@link TokenField}s holding N tokens with
+ * an M-item suggestion vocabulary: the heap retained per field, and the
+ * number of bytes a field adds to a Java-serialized session (what session
+ * replication sends).
+ * <p>
+ * The vocabulary is either a container per field, or a
+ * {@link SharedVocabulary} whose one-off size is reported separately; the
+ * latter is measured with both token render modes. Every
+ * figure is the difference between sessions with the field and sessions with
+ * an empty UI, averaged over a few sessions.
+ * </p>
+ * <p>
+ * Run with
+ * <code>java -cp benchmarks.jar org.vaadin.tokenfield.FootprintReport [tokens=10,100 vocabulary=1000]</code>
+ * ; give the JVM enough heap for the largest combination, e.g -Xmx2g.
+ * </p>
+ */
+public class FootprintReport {
+
+    private static final int SESSIONS = 5;
+
+    private static final long SEED = 4711;
+
+    public static void main(String[] args) throws Exception {
+        int[] tokenCounts = { 10, 100, 1000, 10000 };
+        int[] vocabularySizes = { 1000, 50000 };
+        for (String arg : args) {
+            if (arg.startsWith("tokens=")) {
+                tokenCounts = parse(arg.substring("tokens=".length()));
+            } else if (arg.startsWith("vocabulary=")) {
+                vocabularySizes = parse(arg.substring("vocabulary=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        // load classes and fill static caches before measuring anything
+        List<String> warmUp = TokenFieldBenchmark.generateTokens(100,
+                new Random(SEED));
+        createSession(warmUp, TokenFieldBenchmark.createContainer(warmUp),
+                null, TokenRenderMode.BUTTONS);
+        createSession(warmUp, null, new SuggestionIndex(warmUp),
+                TokenRenderMode.CHIPS);
+        serializedSize(new BenchmarkSession());
+
+        long emptyHeap = retainedHeap(i -> new BenchmarkSession());
+        long emptyBytes = serializedSize(new BenchmarkSession());
+
+        System.out.printf("%8s %10s %-10s %14s %17s%n", "tokens", "vocabulary",
+                "source", "heap KB/field", "serialized KB/field");
+        for (int vocabularySize : vocabularySizes) {
+            for (int tokenCount : tokenCounts) {
+                List<String> words = TokenFieldBenchmark.generateTokens(
+                        Math.max(tokenCount, vocabularySize), new Random(SEED));
+                List<String> tokens = words.subList(0, tokenCount);
+                List<String> vocabulary = words.subList(0, vocabularySize);
+
+                report(tokenCount, vocabularySize, "container", emptyHeap,
+                        emptyBytes, i -> createSession(tokens,
+                                TokenFieldBenchmark.createContainer(vocabulary),
+                                null, TokenRenderMode.BUTTONS));
+
+                SharedVocabulary.remove("footprint");
+                SharedVocabulary shared = SharedVocabulary.get("footprint",
+                        () -> vocabulary);
+                report(tokenCount, vocabularySize, "shared", emptyHeap,
+                        emptyBytes, i -> createSession(tokens, null, shared,
+                                TokenRenderMode.BUTTONS));
+                report(tokenCount, vocabularySize, "chips", emptyHeap,
+                        emptyBytes, i -> createSession(tokens, null, shared,
+                                TokenRenderMode.CHIPS));
+            }
+        }
+
+        for (int vocabularySize : vocabularySizes) {
+            List<String> vocabulary = TokenFieldBenchmark.generateTokens(
+                    vocabularySize, new Random(SEED));
+            SharedVocabulary.remove("footprint");
+            long before = usedHeap();
+            SharedVocabulary shared = SharedVocabulary.get("footprint",
+                    () -> vocabulary);
+            long after = usedHeap();
+            System.out.printf("shared vocabulary of %d: %d KB once, %d bytes"
+                    + " per serialized session%n", shared.size(),
+                    (after - before) / 1024, serializedSize(shared));
+        }
+    }
+
+    private static void report(int tokenCount, int vocabularySize,
+            String source, long emptyHeap, long emptyBytes,
+            IntFunction<BenchmarkSession> sessions) throws IOException {
+        long heap = retainedHeap(sessions) - emptyHeap;
+        long bytes = serializedSize(sessions.apply(0)) - emptyBytes;
+        System.out.printf("%8d %10d %-10s %14.1f %17.1f%n", tokenCount,
+                vocabularySize, source, heap / 1024.0, bytes / 1024.0);
+    }
+
+    private static BenchmarkSession createSession(List<String> tokens,
+            Container container, SuggestionProvider provider,
+            TokenRenderMode renderMode) {
+        BenchmarkSession session = new BenchmarkSession();
+        TokenField field = new TokenField();
+        field.setTokenRenderMode(renderMode);
+        if (container != null) {
+            field.setContainerDataSource(container);
+        } else {
+            field.setSuggestionProvider(provider);
+        }
+        session.attach(field);
+        field.addTokens(tokens);
+        session.endRoundTrip();
+        return session;
+    }
+
+    /*
+     * Average heap retained by a session created by the function
+     */
+    private static long retainedHeap(IntFunction<BenchmarkSession> sessions) {
+        List<BenchmarkSession> keep = new ArrayList<BenchmarkSession>();
+        long before = usedHeap();
+        for (int i = 0; i < SESSIONS; i++) {
+            keep.add(sessions.apply(i));
+        }
+        long after = usedHeap();
+        if (keep.size() != SESSIONS) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / SESSIONS;
+    }
+
+    private static long serializedSize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.close();
+        return bytes.size();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the figure stops dropping
+        for (int i = 0; i < 20; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (i >= 3 && now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    private static int[] parse(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,224 @@
+package org.vaadin.tokenfield;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.tokenfield.TokenField.InsertPosition;
+
+import com.vaadin.v7.data.Container;
+import com.vaadin.v7.data.util.IndexedContainer;
+
+/**
+ * Benchmarks of the server-side hot paths of {@link TokenField}, for fields
+ * holding from 10 to 10000 tokens. The field is attached to a UI of a
+ * {@link BenchmarkSession}, so that layout and connector bookkeeping is
+ * included.
+ * <p>
+ * Benchmarks that change the tokens start every invocation from the same
+ * value; those that toggle a setting flip it on every invocation.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenFieldBenchmark {
+
+    private static final long SEED = 4711;
+
+    /**
+     * A field with tokenCount tokens, captioned from a container.
+     */
+    @State(Scope.Thread)
+    public static class FieldState {
+
+        @Param({ "10", "100", "1000", "10000" })
+        public int tokenCount;
+
+        BenchmarkSession session;
+        TokenField field;
+        List<String> tokens;
+        Set<Object> value;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            tokens = generateTokens(tokenCount, new Random(SEED));
+            session = new BenchmarkSession();
+            field = new TokenField();
+            field.setContainerDataSource(createContainer(tokens));
+            field.setTokenCaptionPropertyId("name");
+            session.attach(field);
+            field.addTokens(tokens);
+            value = new LinkedHashSet<Object>(tokens);
+            session.endRoundTrip();
+        }
+    }
+
+    /**
+     * A field whose value is reset before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class ResetFieldState extends FieldState {
+
+        /* differs from the value by a tenth of the tokens */
+        Set<Object> otherValue;
+        /* tokenCount tokens, none of them in the value */
+        List<String> newTokens;
+        String newToken;
+        String middleToken;
+
+        @Setup(Level.Trial)
+        public void setUpValues() {
+            otherValue = new LinkedHashSet<Object>(tokens);
+            Random random = new Random(SEED);
+            for (int i = 0; i < Math.max(1, tokenCount / 10); i++) {
+                otherValue.remove(tokens.get(random.nextInt(tokens.size())));
+                otherValue.add("other" + i);
+            }
+            newTokens = new ArrayList<String>(tokenCount);
+            for (int i = 0; i < tokenCount; i++) {
+                newTokens.add("new" + i);
+            }
+            newToken = "new";
+            middleToken = tokens.get(tokens.size() / 2);
+        }
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            if (!value.equals(field.getValue())) {
+                field.setValue(new LinkedHashSet<Object>(value));
+            }
+            session.endRoundTrip();
+        }
+    }
+
+    @Benchmark
+    public Object addToken(ResetFieldState state) {
+        state.field.addToken(state.newToken);
+        return state.field.getValue();
+    }
+
+    @Benchmark
+    public Object removeToken(ResetFieldState state) {
+        state.field.removeToken(state.middleToken);
+        return state.field.getValue();
+    }
+
+    /**
+     * Adds as many new tokens as the field holds, in one value change.
+     */
+    @Benchmark
+    public Object addTokens(ResetFieldState state) {
+        state.field.addTokens(state.newTokens);
+        return state.field.getValue();
+    }
+
+    /**
+     * Replaces all tokens with as many new ones, in one value change.
+     */
+    @Benchmark
+    public Object replaceTokens(ResetFieldState state) {
+        state.field.replaceTokens(state.newTokens);
+        return state.field.getValue();
+    }
+
+    /**
+     * Replaces a tenth of the tokens, i.e diffs the old and new value in
+     * setInternalValue.
+     */
+    @Benchmark
+    public Object setValue(ResetFieldState state) {
+        state.field.setValue(new LinkedHashSet<Object>(state.otherValue));
+        return state.field.getValue();
+    }
+
+    /**
+     * Removes the last token like backspace in an empty input does.
+     */
+    @Benchmark
+    public Object onDelete(ResetFieldState state) {
+        state.field.cb.onDelete(1);
+        return state.field.getValue();
+    }
+
+    /**
+     * Moving the input reconciles the layout.
+     */
+    @Benchmark
+    public Object reconcile(FieldState state) {
+        TokenField field = state.field;
+        field.setTokenInsertPosition(
+                field.getTokenInsertPosition() == InsertPosition.BEFORE
+                        ? InsertPosition.AFTER : InsertPosition.BEFORE);
+        state.session.endRoundTrip();
+        return field;
+    }
+
+    @Benchmark
+    public Object setReadOnly(FieldState state) {
+        TokenField field = state.field;
+        field.setReadOnly(!field.isReadOnly());
+        state.session.endRoundTrip();
+        return field;
+    }
+
+    @Benchmark
+    public String getTokenCaption(FieldState state, CaptionCursor cursor) {
+        return state.field.getTokenCaption(cursor.next(state.tokens));
+    }
+
+    /**
+     * Cycles through the tokens, so that captions are not looked up for the
+     * same token only.
+     */
+    @State(Scope.Thread)
+    public static class CaptionCursor {
+
+        private int index;
+
+        String next(List<String> tokens) {
+            index = (index + 1) % tokens.size();
+            return tokens.get(index);
+        }
+    }
+
+    static List<String> generateTokens(int count, Random random) {
+        List<String> tokens = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 4 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            tokens.add(sb.append(i).toString());
+        }
+        return tokens;
+    }
+
+    static Container createContainer(List<String> tokens) {
+        IndexedContainer container = new IndexedContainer();
+        container.addContainerProperty("name", String.class, "");
+        for (String token : tokens) {
+            container.addItem(token).getItemProperty("name")
+                    .setValue(token.toUpperCase());
+        }
+        return container;
+    }
+}
@@ -0,0 +1,103 @@
+package org.vaadin.tokenfield;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.tokenfield.model.SimpleVocabulary;
+import org.vaadin.tokenfield.model.TokenModel;
+
+/**
+ * Benchmarks of the headless {@link TokenModel}, without any session or
+ * components; compare with {@link TokenFieldBenchmark} to see what the UI
+ * adds on top of the token bookkeeping.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenModelBenchmark {
+
+    private static final long SEED = 4711;
+
+    /**
+     * A model with tokenCount tokens, reset before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class ModelState {
+
+        @Param({ "10", "100", "1000", "10000" })
+        public int tokenCount;
+
+        TokenModel model;
+        Set<Object> value;
+        /* differs from the value by a tenth of the tokens */
+        Set<Object> otherValue;
+        List<String> input;
+        String middleToken;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            List<String> tokens = TokenFieldBenchmark.generateTokens(
+                    tokenCount, new Random(SEED));
+            value = new LinkedHashSet<Object>(tokens);
+            otherValue = new LinkedHashSet<Object>(tokens);
+            Random random = new Random(SEED);
+            for (int i = 0; i < Math.max(1, tokenCount / 10); i++) {
+                otherValue.remove(tokens.get(random.nextInt(tokens.size())));
+                otherValue.add("other" + i);
+            }
+            middleToken = tokens.get(tokens.size() / 2);
+            input = Arrays.asList(tokens.get(0), "pasted1", "pasted2");
+            model = new TokenModel(new SimpleVocabulary(tokens));
+            model.setNewTokensAllowed(false);
+        }
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            model.set(value);
+        }
+    }
+
+    @Benchmark
+    public Object add(ModelState state) {
+        return state.model.add("new");
+    }
+
+    @Benchmark
+    public Object remove(ModelState state) {
+        return state.model.remove(state.middleToken);
+    }
+
+    /**
+     * Replaces a tenth of the tokens, like a value change of a field.
+     */
+    @Benchmark
+    public Object set(ModelState state) {
+        return state.model.set(state.otherValue);
+    }
+
+    /**
+     * Pasted tokens, checked against the vocabulary.
+     */
+    @Benchmark
+    public Object input(ModelState state) {
+        return state.model.input(state.input);
+    }
+}
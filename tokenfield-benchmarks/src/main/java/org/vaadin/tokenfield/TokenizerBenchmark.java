@@ -0,0 +1,113 @@
+package org.vaadin.tokenfield;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.tokenfield.model.Tokenizer;
+
+/**
+ * Benchmarks of splitting pasted text of up to 4 MB into tokens, with
+ * {@link Tokenizer} and with the regular expression splitting applications
+ * used to do themselves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private static final long SEED = 4711;
+
+    /**
+     * Comma separated tokens with spaces around them.
+     */
+    @State(Scope.Benchmark)
+    public static class TextState {
+
+        @Param({ "1024", "65536", "4194304" })
+        public int length;
+
+        String text;
+        Tokenizer tokenizer;
+        Pattern separator;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(SEED);
+            StringBuilder sb = new StringBuilder(length + 32);
+            int i = 0;
+            while (sb.length() < length) {
+                List<String> tokens = TokenFieldBenchmark.generateTokens(1,
+                        random);
+                sb.append(tokens.get(0)).append(i++ % 3 == 0 ? " , " : ",");
+            }
+            text = sb.toString();
+            tokenizer = new Tokenizer(",");
+            separator = Pattern.compile("\\s*,\\s*");
+        }
+    }
+
+    @Benchmark
+    public List<String> tokenizer(TextState state) {
+        return state.tokenizer.tokenize(state.text);
+    }
+
+    /**
+     * The same with quotes and escapes enabled, which the text does not use.
+     */
+    @Benchmark
+    public List<String> tokenizerQuoted(TextState state) {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setQuote('"');
+        tokenizer.setEscape('\\');
+        return tokenizer.tokenize(state.text);
+    }
+
+    /**
+     * String.split, trim and filtering of empty tokens, the way token fields
+     * were customized to split input.
+     */
+    @Benchmark
+    public List<String> stringSplit(TextState state) {
+        String[] parts = state.text.split(",");
+        List<String> tokens = new ArrayList<String>(parts.length);
+        for (String part : parts) {
+            String token = part.trim();
+            if (token.length() > 0) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * A precompiled pattern that also trims.
+     */
+    @Benchmark
+    public List<String> patternSplit(TextState state) {
+        String[] parts = state.separator.split(state.text.trim());
+        List<String> tokens = new ArrayList<String>(parts.length);
+        for (String token : parts) {
+            if (token.length() > 0) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
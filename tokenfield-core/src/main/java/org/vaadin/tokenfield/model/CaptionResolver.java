@@ -0,0 +1,24 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.Serializable;
+
+/**
+ * Resolves the caption shown for a token.
+ */
+@FunctionalInterface
+public interface CaptionResolver extends Serializable {
+
+    /**
+     * Uses the string representation of the token as its caption.
+     */
+    public static final CaptionResolver DEFAULT = String::valueOf;
+
+    /**
+     * Gets the caption of a token.
+     *
+     * @param tokenId
+     *            the token
+     * @return the caption
+     */
+    public String getCaption(Object tokenId);
+}
@@ -0,0 +1,277 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An insertion ordered set of tokens that also knows positions: like a
+ * {@link java.util.LinkedHashSet}, but the ends and the neighbors of a token
+ * are found in O(1), and the index of a token and the token at an index in
+ * O(log n).
+ * <p>
+ * Every token takes the next free slot at the end; a Fenwick tree counts the
+ * tokens in the slots, so the index of a token is the number of tokens in the
+ * slots before it. Slots of removed tokens are reclaimed when the slots are
+ * renumbered, which happens when they run out and at most half of them are
+ * used.
+ * </p>
+ */
+final class IndexedTokenSet extends AbstractSet<Object> implements
+        Serializable {
+
+    private static final long serialVersionUID = 5409542117432045838L;
+
+    private static final int INITIAL_SLOTS = 16;
+
+    private static final class Node {
+
+        private final Object token;
+        private Node previous;
+        private Node next;
+        private int slot;
+
+        private Node(Object token) {
+            this.token = token;
+        }
+    }
+
+    private transient HashMap<Object, Node> nodes;
+    private transient Node first;
+    private transient Node last;
+
+    /* 1-based slots; slots[s] is the node in slot s, or null */
+    private transient Node[] slots;
+    /* Fenwick tree over the occupied slots */
+    private transient int[] counts;
+    private transient int nextSlot;
+
+    private transient int modCount;
+
+    IndexedTokenSet() {
+        init(INITIAL_SLOTS);
+    }
+
+    private void init(int capacity) {
+        nodes = new HashMap<Object, Node>();
+        first = null;
+        last = null;
+        slots = new Node[capacity + 1];
+        counts = new int[capacity + 1];
+        nextSlot = 1;
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return nodes.containsKey(o);
+    }
+
+    /**
+     * Adds a token at the end, unless it is already included.
+     */
+    @Override
+    public boolean add(Object token) {
+        if (nodes.containsKey(token)) {
+            return false;
+        }
+        if (nextSlot == slots.length) {
+            renumber();
+        }
+        Node node = new Node(token);
+        nodes.put(token, node);
+        node.previous = last;
+        if (last == null) {
+            first = node;
+        } else {
+            last.next = node;
+        }
+        last = node;
+        node.slot = nextSlot++;
+        slots[node.slot] = node;
+        for (int i = node.slot; i < counts.length; i += i & -i) {
+            counts[i]++;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object token) {
+        Node node = nodes.remove(token);
+        if (node == null) {
+            return false;
+        }
+        if (node.previous == null) {
+            first = node.next;
+        } else {
+            node.previous.next = node.next;
+        }
+        if (node.next == null) {
+            last = node.previous;
+        } else {
+            node.next.previous = node.previous;
+        }
+        slots[node.slot] = null;
+        for (int i = node.slot; i < counts.length; i += i & -i) {
+            counts[i]--;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        init(INITIAL_SLOTS);
+        modCount++;
+    }
+
+    /*
+     * Moves the tokens to the first slots, doubling the slots if more than
+     * half are in use, and rebuilds the tree in O(n).
+     */
+    private void renumber() {
+        int size = nodes.size();
+        int capacity = slots.length - 1;
+        if (size * 2 > capacity) {
+            capacity *= 2;
+        }
+        slots = new Node[capacity + 1];
+        counts = new int[capacity + 1];
+        int slot = 1;
+        for (Node node = first; node != null; node = node.next) {
+            node.slot = slot;
+            slots[slot] = node;
+            counts[slot] = 1;
+            slot++;
+        }
+        nextSlot = slot;
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                counts[parent] += counts[i];
+            }
+        }
+    }
+
+    Object getFirst() {
+        return first == null ? null : first.token;
+    }
+
+    Object getLast() {
+        return last == null ? null : last.token;
+    }
+
+    Object getPrevious(Object token) {
+        Node node = nodes.get(token);
+        return node == null || node.previous == null ? null
+                : node.previous.token;
+    }
+
+    Object getNext(Object token) {
+        Node node = nodes.get(token);
+        return node == null || node.next == null ? null : node.next.token;
+    }
+
+    int indexOf(Object token) {
+        Node node = nodes.get(token);
+        if (node == null) {
+            return -1;
+        }
+        int index = -1;
+        for (int i = node.slot; i > 0; i -= i & -i) {
+            index += counts[i];
+        }
+        return index;
+    }
+
+    Object get(int index) {
+        if (index < 0 || index >= nodes.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + nodes.size());
+        }
+        // descend the tree to the slot holding the (index + 1)th token
+        int slot = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(counts.length - 1); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next < counts.length && counts[next] < remaining) {
+                slot = next;
+                remaining -= counts[next];
+            }
+        }
+        return slots[slot + 1].token;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+
+            private Node next = first;
+            private Node current;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Object next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                current = next;
+                next = next.next;
+                return current.token;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                IndexedTokenSet.this.remove(current.token);
+                current = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    /*
+     * Only the tokens are written, in order
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(nodes.size());
+        for (Node node = first; node != null; node = node.next) {
+            out.writeObject(node.token);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        init(Math.max(INITIAL_SLOTS, Integer.highestOneBit(size) * 2));
+        for (int i = 0; i < size; i++) {
+            add(in.readObject());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An observed-remove set of tokens, a set that replicas can change
+ * independently and merge without conflicts. Every addition of a token is
+ * tagged uniquely; a removal removes only the tags of the token its replica
+ * has observed, so a concurrent addition elsewhere survives it ("add wins").
+ * Merging {@link Delta}s is commutative, associative and idempotent, so all
+ * replicas that have merged the same deltas, in any order and any number of
+ * times, contain the same tokens.
+ * <p>
+ * Tags of removed tokens are kept, so that a removal merged before the
+ * addition it removes still wins. Not safe for concurrent use.
+ * </p>
+ *
+ * @see SharedTokenDocument
+ */
+public class ORSet implements Serializable {
+
+    private static final long serialVersionUID = 4206213339826374513L;
+
+    /**
+     * Identifies one addition of a token: the replica that added it and a
+     * counter of that replica.
+     */
+    public static final class Tag implements Serializable {
+
+        private static final long serialVersionUID = -7468061547263404766L;
+
+        private final String replica;
+        private final long counter;
+
+        public Tag(String replica, long counter) {
+            this.replica = replica;
+            this.counter = counter;
+        }
+
+        public String getReplica() {
+            return replica;
+        }
+
+        public long getCounter() {
+            return counter;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Tag)) {
+                return false;
+            }
+            Tag other = (Tag) obj;
+            return counter == other.counter && replica.equals(other.replica);
+        }
+
+        @Override
+        public int hashCode() {
+            return replica.hashCode() * 31 + Long.hashCode(counter);
+        }
+
+        @Override
+        public String toString() {
+            return replica + ":" + counter;
+        }
+    }
+
+    /**
+     * The tags added and removed by a change of one replica, to be merged
+     * into the others. Immutable.
+     */
+    public static final class Delta implements Serializable {
+
+        private static final long serialVersionUID = 2290624212108394071L;
+
+        private final Map<Object, Set<Tag>> added;
+        private final Map<Object, Set<Tag>> removed;
+
+        Delta(Map<Object, Set<Tag>> added, Map<Object, Set<Tag>> removed) {
+            this.added = Collections.unmodifiableMap(added);
+            this.removed = Collections.unmodifiableMap(removed);
+        }
+
+        /**
+         * @return the new tags of each added token
+         */
+        public Map<Object, Set<Tag>> getAdded() {
+            return added;
+        }
+
+        /**
+         * @return the observed tags of each removed token
+         */
+        public Map<Object, Set<Tag>> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return true if the delta changes nothing
+         */
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "+" + added + " -" + removed;
+        }
+    }
+
+    private final String replica;
+    private long counter;
+
+    /* the live tags of each token, in the order tokens were first seen */
+    private final LinkedHashMap<Object, Set<Tag>> entries = new LinkedHashMap<Object, Set<Tag>>();
+    private final Set<Tag> removedTags = new HashSet<Tag>();
+
+    /**
+     * Creates an empty set for a replica.
+     *
+     * @param replica
+     *            the id of the replica, unique among all replicas merging
+     *            each other's deltas
+     */
+    public ORSet(String replica) {
+        if (replica == null) {
+            throw new IllegalArgumentException("replica can not be null");
+        }
+        this.replica = replica;
+    }
+
+    /**
+     * Creates a copy of another set, for another replica.
+     *
+     * @param replica
+     *            the id of the new replica
+     * @param other
+     *            the set to copy
+     */
+    public ORSet(String replica, ORSet other) {
+        this(replica);
+        for (Map.Entry<Object, Set<Tag>> e : other.entries.entrySet()) {
+            entries.put(e.getKey(), new HashSet<Tag>(e.getValue()));
+        }
+        removedTags.addAll(other.removedTags);
+    }
+
+    public String getReplica() {
+        return replica;
+    }
+
+    /**
+     * Adds tokens with new tags of this replica; tokens already in the set get
+     * a new tag too, so that they survive concurrent removals.
+     *
+     * @param tokenIds
+     *            the tokens to add
+     * @return the delta to merge into other replicas
+     */
+    public Delta addAll(Collection<?> tokenIds) {
+        Map<Object, Set<Tag>> added = new LinkedHashMap<Object, Set<Tag>>();
+        for (Object tokenId : tokenIds) {
+            if (tokenId != null && !added.containsKey(tokenId)) {
+                Tag tag = new Tag(replica, ++counter);
+                entries.computeIfAbsent(tokenId, t -> new HashSet<Tag>())
+                        .add(tag);
+                added.put(tokenId, Collections.singleton(tag));
+            }
+        }
+        return new Delta(added, Collections.emptyMap());
+    }
+
+    /**
+     * Removes the tokens as observed by this replica.
+     *
+     * @param tokenIds
+     *            the tokens to remove
+     * @return the delta to merge into other replicas
+     */
+    public Delta removeAll(Collection<?> tokenIds) {
+        Map<Object, Set<Tag>> removed = new LinkedHashMap<Object, Set<Tag>>();
+        for (Object tokenId : tokenIds) {
+            Set<Tag> tags = entries.remove(tokenId);
+            if (tags != null) {
+                removedTags.addAll(tags);
+                removed.put(tokenId, tags);
+            }
+        }
+        return new Delta(Collections.emptyMap(), removed);
+    }
+
+    /**
+     * Merges a delta of another replica, or of this one.
+     *
+     * @param delta
+     *            the delta to merge
+     * @return the tokens that appeared in and disappeared from this set
+     */
+    public TokenDelta merge(Delta delta) {
+        Set<Object> removed = new LinkedHashSet<Object>();
+        for (Map.Entry<Object, Set<Tag>> e : delta.removed.entrySet()) {
+            removedTags.addAll(e.getValue());
+            Set<Tag> tags = entries.get(e.getKey());
+            if (tags != null && tags.removeAll(e.getValue())
+                    && tags.isEmpty()) {
+                entries.remove(e.getKey());
+                removed.add(e.getKey());
+            }
+        }
+        Set<Object> added = new LinkedHashSet<Object>();
+        for (Map.Entry<Object, Set<Tag>> e : delta.added.entrySet()) {
+            for (Tag tag : e.getValue()) {
+                if (!removedTags.contains(tag)) {
+                    Set<Tag> tags = entries.get(e.getKey());
+                    if (tags == null) {
+                        tags = new HashSet<Tag>();
+                        entries.put(e.getKey(), tags);
+                        if (!removed.remove(e.getKey())) {
+                            added.add(e.getKey());
+                        }
+                    }
+                    tags.add(tag);
+                }
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return TokenDelta.EMPTY;
+        }
+        return new TokenDelta(added, removed);
+    }
+
+    public boolean contains(Object tokenId) {
+        return entries.containsKey(tokenId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the tokens, in the order this replica first saw them, as an
+     *         unmodifiable live view
+     */
+    public Set<Object> getTokens() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return entries.keySet().toString();
+    }
+}
@@ -0,0 +1,358 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A token set edited by many users at once, e.g the tags of one record open
+ * in several sessions. Every editor {@link #join(Runnable) joins} the
+ * document as a {@link Replica} holding its own {@link ORSet}; changes are
+ * made to the replica and broadcast to all other replicas as deltas, so
+ * concurrent additions and removals merge deterministically instead of the
+ * last writer winning.
+ * <p>
+ * Documents are looked up by name, see {@link #get(String)}. The registry
+ * holds documents weakly: a document nobody refers to any more, e.g after
+ * the last editor has gone, is forgotten with its tokens, and the next
+ * {@link #get(String)} creates a new one. When a session is serialized only
+ * the name of the document is written, and the document registered under
+ * that name is used on deserialization.
+ * </p>
+ * <p>
+ * A new document has no tokens. It is seeded either when it is created, see
+ * {@link #get(String, Collection)}, or by the first replica joining it, see
+ * {@link #join(Runnable, Collection)}; e.g with the tokens the record had
+ * when it was loaded.
+ * </p>
+ */
+public final class SharedTokenDocument implements Serializable {
+
+    private static final long serialVersionUID = -4573296131390227781L;
+
+    private static final ConcurrentHashMap<String, DocumentReference> documents = new ConcurrentHashMap<String, DocumentReference>();
+
+    /* references of documents that have been collected */
+    private static final ReferenceQueue<SharedTokenDocument> collected = new ReferenceQueue<SharedTokenDocument>();
+
+    private static final class DocumentReference extends
+            WeakReference<SharedTokenDocument> {
+
+        private final String name;
+
+        DocumentReference(SharedTokenDocument document) {
+            super(document, collected);
+            name = document.name;
+        }
+    }
+
+    private final String name;
+
+    /* every delta merged, guarded by this */
+    private transient final ORSet state;
+
+    /* true once seeded or changed by a replica, guarded by this */
+    private transient boolean written;
+
+    private transient final CopyOnWriteArrayList<Replica> replicas = new CopyOnWriteArrayList<Replica>();
+
+    private SharedTokenDocument(String name) {
+        this.name = name;
+        state = new ORSet(name);
+    }
+
+    /**
+     * Gets the document registered with the given name, registering an empty
+     * one if needed.
+     *
+     * @param name
+     *            the name of the document, e.g the id of the record
+     * @return the shared document
+     */
+    public static SharedTokenDocument get(String name) {
+        return get(name, Collections.emptySet());
+    }
+
+    /**
+     * Gets the document registered with the given name, registering one
+     * holding the given tokens if needed. The tokens are ignored if the
+     * document is already registered.
+     *
+     * @param name
+     *            the name of the document, e.g the id of the record
+     * @param initialTokens
+     *            the tokens of a new document
+     * @return the shared document
+     */
+    public static SharedTokenDocument get(String name,
+            Collection<?> initialTokens) {
+        expungeCollected();
+        while (true) {
+            DocumentReference reference = documents.get(name);
+            SharedTokenDocument document = reference == null ? null
+                    : reference.get();
+            if (document != null) {
+                return document;
+            }
+            document = new SharedTokenDocument(name);
+            if (!initialTokens.isEmpty()) {
+                document.state.addAll(initialTokens);
+                document.written = true;
+            }
+            DocumentReference created = new DocumentReference(document);
+            if (reference == null ? documents.putIfAbsent(name, created) == null
+                    : documents.replace(name, reference, created)) {
+                return document;
+            }
+        }
+    }
+
+    /**
+     * Unregisters the document with the given name. Replicas that have
+     * joined it keep on sharing their changes.
+     *
+     * @param name
+     *            the name of the document
+     */
+    public static void remove(String name) {
+        documents.remove(name);
+    }
+
+    private static void expungeCollected() {
+        DocumentReference reference;
+        while ((reference = (DocumentReference) collected.poll()) != null) {
+            documents.remove(reference.name, reference);
+        }
+    }
+
+    /**
+     * @return the name the document is registered with
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a snapshot of the tokens of the document
+     */
+    public synchronized Set<Object> getTokens() {
+        return new LinkedHashSet<Object>(state.getTokens());
+    }
+
+    /**
+     * @return the number of replicas that have joined and not left
+     */
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * Joins the document as a new replica, starting from the current tokens.
+     *
+     * @param deliveryListener
+     *            called when changes of other replicas have been delivered to
+     *            a replica that had no pending changes, so that they can be
+     *            {@link Replica#drain() drained}; called from the thread of
+     *            the other replica, must not block
+     * @return the replica
+     */
+    public Replica join(Runnable deliveryListener) {
+        return join(deliveryListener, Collections.emptySet());
+    }
+
+    /**
+     * Joins the document as a new replica. If the document has neither been
+     * seeded nor changed yet, it is first seeded with the given tokens, e.g
+     * the tokens the joining editor has loaded; replicas that have joined
+     * before get them as a change. Otherwise the replica starts from the
+     * current tokens, and the given ones are ignored.
+     *
+     * @param deliveryListener
+     *            see {@link #join(Runnable)}
+     * @param initialTokens
+     *            the tokens to seed a document that has never been written
+     * @return the replica
+     */
+    public Replica join(Runnable deliveryListener, Collection<?> initialTokens) {
+        ORSet.Delta seed = null;
+        Replica replica;
+        Iterator<Replica> targets;
+        synchronized (this) {
+            if (!written && !initialTokens.isEmpty()) {
+                seed = state.addAll(initialTokens);
+                written = true;
+            }
+            targets = replicas.iterator();
+            replica = new Replica(name + "/" + UUID.randomUUID(), state,
+                    deliveryListener);
+            replicas.add(replica);
+        }
+        if (seed != null) {
+            while (targets.hasNext()) {
+                targets.next().deliver(seed);
+            }
+        }
+        return replica;
+    }
+
+    private void publish(Replica from, ORSet.Delta delta) {
+        Iterator<Replica> targets;
+        synchronized (this) {
+            state.merge(delta);
+            written = true;
+            // replicas joining later copy the merged state instead
+            targets = replicas.iterator();
+        }
+        // deliver outside the lock, merging does not depend on the order
+        while (targets.hasNext()) {
+            Replica replica = targets.next();
+            if (replica != from) {
+                replica.deliver(delta);
+            }
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedForm(name);
+    }
+
+    private static final class SerializedForm implements Serializable {
+
+        private static final long serialVersionUID = 6719284447413508815L;
+
+        private final String name;
+
+        private SerializedForm(String name) {
+            this.name = name;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return get(name);
+        }
+    }
+
+    /**
+     * One editor's copy of the document. Changes are made with
+     * {@link #addAll(Collection)} and {@link #removeAll(Collection)} and
+     * received with {@link #drain()}; these must be called by one thread at a
+     * time, e.g with the editor's session locked. Deltas of other replicas
+     * are delivered concurrently and queued until drained.
+     */
+    public final class Replica {
+
+        private final ORSet set;
+        private final Runnable deliveryListener;
+        private final ConcurrentLinkedQueue<ORSet.Delta> inbox = new ConcurrentLinkedQueue<ORSet.Delta>();
+        private final AtomicBoolean drainPending = new AtomicBoolean();
+        private volatile boolean joined = true;
+
+        private Replica(String id, ORSet state, Runnable deliveryListener) {
+            set = new ORSet(id, state);
+            this.deliveryListener = deliveryListener;
+        }
+
+        /**
+         * @return the document of this replica
+         */
+        public SharedTokenDocument getDocument() {
+            return SharedTokenDocument.this;
+        }
+
+        /**
+         * Adds tokens and shares the addition with the other replicas.
+         *
+         * @param tokenIds
+         *            the tokens to add
+         */
+        public void addAll(Collection<?> tokenIds) {
+            share(set.addAll(tokenIds));
+        }
+
+        /**
+         * Removes tokens as observed by this replica, and shares the removal
+         * with the other replicas.
+         *
+         * @param tokenIds
+         *            the tokens to remove
+         */
+        public void removeAll(Collection<?> tokenIds) {
+            share(set.removeAll(tokenIds));
+        }
+
+        /**
+         * Merges the changes delivered from other replicas.
+         *
+         * @return the tokens added and removed by them
+         */
+        public TokenDelta drain() {
+            drainPending.set(false);
+            Set<Object> added = new LinkedHashSet<Object>();
+            Set<Object> removed = new LinkedHashSet<Object>();
+            ORSet.Delta delta;
+            while ((delta = inbox.poll()) != null) {
+                TokenDelta merged = set.merge(delta);
+                for (Object tokenId : merged.getRemoved()) {
+                    if (!added.remove(tokenId)) {
+                        removed.add(tokenId);
+                    }
+                }
+                for (Object tokenId : merged.getAdded()) {
+                    if (!removed.remove(tokenId)) {
+                        added.add(tokenId);
+                    }
+                }
+            }
+            if (added.isEmpty() && removed.isEmpty()) {
+                return TokenDelta.EMPTY;
+            }
+            return new TokenDelta(added, removed);
+        }
+
+        /**
+         * @return the tokens of this replica, as an unmodifiable live view
+         */
+        public Set<Object> getTokens() {
+            return set.getTokens();
+        }
+
+        /**
+         * Stops sharing changes; the replica can not be used any more.
+         */
+        public void leave() {
+            joined = false;
+            replicas.remove(this);
+            inbox.clear();
+        }
+
+        public boolean isJoined() {
+            return joined;
+        }
+
+        private void share(ORSet.Delta delta) {
+            if (!joined) {
+                throw new IllegalStateException("The replica has left");
+            }
+            if (!delta.isEmpty()) {
+                publish(this, delta);
+            }
+        }
+
+        private void deliver(ORSet.Delta delta) {
+            inbox.offer(delta);
+            if (drainPending.compareAndSet(false, true)) {
+                deliveryListener.run();
+            }
+        }
+    }
+}
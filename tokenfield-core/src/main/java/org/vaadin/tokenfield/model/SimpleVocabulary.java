@@ -0,0 +1,54 @@
+package org.vaadin.tokenfield.model;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Vocabulary} held in memory, e.g for batch jobs. Safe for
+ * concurrent use.
+ */
+public class SimpleVocabulary implements Vocabulary {
+
+    private static final long serialVersionUID = 2871709312480315577L;
+
+    private final ConcurrentHashMap<Object, String> captions = new ConcurrentHashMap<Object, String>();
+
+    public SimpleVocabulary() {
+    }
+
+    /**
+     * Creates a vocabulary of the given tokens, captioned by their string
+     * representation.
+     *
+     * @param tokenIds
+     *            the tokens
+     */
+    public SimpleVocabulary(Collection<?> tokenIds) {
+        for (Object tokenId : tokenIds) {
+            captions.put(tokenId, String.valueOf(tokenId));
+        }
+    }
+
+    @Override
+    public boolean contains(Object tokenId) {
+        return captions.containsKey(tokenId);
+    }
+
+    @Override
+    public String getCaption(Object tokenId) {
+        String caption = captions.get(tokenId);
+        return caption != null ? caption : String.valueOf(tokenId);
+    }
+
+    @Override
+    public boolean rememberToken(Object tokenId, String caption) {
+        return captions.putIfAbsent(tokenId, caption) == null;
+    }
+
+    /**
+     * @return the number of known tokens
+     */
+    public int size() {
+        return captions.size();
+    }
+}
@@ -0,0 +1,62 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The tokens added to and removed from a {@link TokenModel} by one change.
+ */
+public final class TokenDelta implements Serializable {
+
+    private static final long serialVersionUID = -6390361658127519405L;
+
+    /**
+     * A change that changed nothing.
+     */
+    public static final TokenDelta EMPTY = new TokenDelta(
+            Collections.emptySet(), Collections.emptySet());
+
+    private final Set<Object> added;
+    private final Set<Object> removed;
+
+    /**
+     * Creates a delta; the sets are not copied, and must not be changed
+     * afterwards.
+     *
+     * @param added
+     *            the added tokens, in order
+     * @param removed
+     *            the removed tokens, in order
+     */
+    public TokenDelta(Set<Object> added, Set<Object> removed) {
+        this.added = Collections.unmodifiableSet(added);
+        this.removed = Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * @return the added tokens, in the order they were added
+     */
+    public Set<Object> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the removed tokens, in the order they had
+     */
+    public Set<Object> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return true if nothing was added or removed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added + " -" + removed;
+    }
+}
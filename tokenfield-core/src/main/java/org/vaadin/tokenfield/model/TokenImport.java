@@ -0,0 +1,305 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Imports tokens from a stream of text, e.g an uploaded CSV file with
+ * hundreds of thousands of tags. The text is read and tokenized one chunk at
+ * a time (see {@link Tokenizer#tokenize(Reader, int, Predicate)}), duplicates
+ * are dropped as they are found, and the new tokens are handed on in batches
+ * of at most {@link #setBatchSize(int)} tokens, so that each batch can be
+ * applied as one bounded change. Reading stops when
+ * {@link #setMaxTokens(int)} tokens have been imported.
+ * <p>
+ * An import can be run any number of times, but not concurrently.
+ * </p>
+ */
+public class TokenImport {
+
+    /**
+     * The counts of an import so far.
+     */
+    public static final class Progress implements Serializable {
+
+        private static final long serialVersionUID = -3406954734914823062L;
+
+        private final long charsRead;
+        private final int imported;
+        private final int duplicates;
+        private final int skipped;
+        private final boolean complete;
+        private final boolean limitReached;
+
+        Progress(long charsRead, int imported, int duplicates, int skipped,
+                boolean complete, boolean limitReached) {
+            this.charsRead = charsRead;
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.skipped = skipped;
+            this.complete = complete;
+            this.limitReached = limitReached;
+        }
+
+        /**
+         * @return the number of characters read so far
+         */
+        public long getCharsRead() {
+            return charsRead;
+        }
+
+        /**
+         * @return the number of new tokens handed on so far
+         */
+        public int getImported() {
+            return imported;
+        }
+
+        /**
+         * @return the number of tokens dropped because they were already
+         *         present or imported
+         */
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * @return the number of tokens left out because they were longer
+         *         than {@link Tokenizer#getMaxTokenLength()} or than a chunk
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return true once the import has ended
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return true if reading stopped at {@link TokenImport#getMaxTokens()}
+         */
+        public boolean isLimitReached() {
+            return limitReached;
+        }
+
+        @Override
+        public String toString() {
+            return imported + " imported, " + duplicates + " duplicates, "
+                    + skipped + " skipped, " + charsRead + " chars read"
+                    + (limitReached ? ", limit reached" : "");
+        }
+    }
+
+    /**
+     * Notified of the progress of an import.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        /**
+         * Called after each batch, and once when the import has ended.
+         *
+         * @param progress
+         *            the counts so far
+         */
+        public void progress(Progress progress);
+    }
+
+    private final Tokenizer tokenizer;
+    private int chunkSize = 65536;
+    private int batchSize = 1000;
+    private int maxTokens = Integer.MAX_VALUE;
+    private ProgressListener progressListener;
+
+    /**
+     * Creates an import splitting the text with the given tokenizer.
+     *
+     * @param tokenizer
+     *            the tokenizer, e.g limiting the token length
+     */
+    public TokenImport(Tokenizer tokenizer) {
+        if (tokenizer == null) {
+            throw new IllegalArgumentException("tokenizer can not be null");
+        }
+        this.tokenizer = tokenizer;
+    }
+
+    public Tokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * Sets how many characters are read and held at a time; tokens longer
+     * than this are skipped (see {@link Progress#getSkipped()}).
+     *
+     * @param chunkSize
+     *            the number of characters, 65536 by default
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("chunkSize must be at least 16");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the maximum number of tokens handed on at once.
+     *
+     * @param batchSize
+     *            the batch size, 1000 by default
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of new tokens to import; the rest of the text
+     * is not read.
+     *
+     * @param maxTokens
+     *            the limit, unlimited by default
+     */
+    public void setMaxTokens(int maxTokens) {
+        if (maxTokens < 0) {
+            throw new IllegalArgumentException("maxTokens can not be negative");
+        }
+        this.maxTokens = maxTokens;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * @param progressListener
+     *            notified after each batch, or null
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Imports tokens into a model, one {@link TokenModel#addAll(java.util.Collection)}
+     * per batch.
+     *
+     * @param reader
+     *            the text, not closed
+     * @param model
+     *            the model to add the tokens to
+     * @return the final progress
+     * @throws IOException
+     *             if reading fails; the batches before have been added
+     */
+    public Progress run(Reader reader, TokenModel model) throws IOException {
+        return run(reader, model::contains, model::addAll);
+    }
+
+    /**
+     * Imports tokens.
+     *
+     * @param reader
+     *            the text, not closed
+     * @param present
+     *            tells which tokens are already present, and dropped as
+     *            duplicates
+     * @param batchConsumer
+     *            receives the new tokens in batches, in order; the list can
+     *            be kept
+     * @return the final progress
+     * @throws IOException
+     *             if reading fails; the batches before have been handed on
+     */
+    public Progress run(Reader reader, Predicate<Object> present,
+            Consumer<? super List<String>> batchConsumer) throws IOException {
+        CountingReader counting = new CountingReader(reader);
+        Set<String> imported = new HashSet<String>();
+        List<String> batch = new ArrayList<String>();
+        int[] duplicates = new int[1];
+        int[] skipped = new int[1];
+
+        boolean complete = maxTokens == 0
+                || tokenizer.tokenize(counting, chunkSize, token -> {
+                    if (imported.contains(token) || present.test(token)) {
+                        duplicates[0]++;
+                        return true;
+                    }
+                    imported.add(token);
+                    batch.add(token);
+                    if (batch.size() == batchSize) {
+                        batchConsumer.accept(new ArrayList<String>(batch));
+                        batch.clear();
+                        fireProgress(new Progress(counting.count,
+                                imported.size(), duplicates[0], skipped[0],
+                                false, false));
+                    }
+                    return imported.size() < maxTokens;
+                }, () -> skipped[0]++);
+
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+        }
+        Progress progress = new Progress(counting.count, imported.size(),
+                duplicates[0], skipped[0], true, !complete);
+        fireProgress(progress);
+        return progress;
+    }
+
+    private void fireProgress(Progress progress) {
+        if (progressListener != null) {
+            progressListener.progress(progress);
+        }
+    }
+
+    private static final class CountingReader extends FilterReader {
+
+        long count;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                count++;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int read = super.read(cbuf, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The tokens of a token field, without any UI: an ordered set of tokens, how
+ * they are captioned and which new tokens are accepted from user input. The
+ * Vaadin TokenField keeps its tokens in a model and only maps the changes to
+ * its components, so the same rules can be used and tested headless, e.g in
+ * batch imports.
+ * <p>
+ * Tokens are kept in the order they were added; replacing all tokens with
+ * {@link #set(Collection)} keeps the position of the tokens that remain. The
+ * ends and the neighbors of a token are found in constant time, and the index
+ * of a token and the token at an index in logarithmic time, so views can show
+ * or page through a prefix of many tokens without copying them.
+ * Every change returns a {@link TokenDelta} and, if anything changed, notifies
+ * the {@link TokenModelListener}s.
+ * </p>
+ * <p>
+ * Not safe for concurrent use.
+ * </p>
+ */
+public class TokenModel implements Serializable {
+
+    private static final long serialVersionUID = -1943371203387306318L;
+
+    private final IndexedTokenSet tokens = new IndexedTokenSet();
+    private final Set<Object> tokensView = Collections
+            .unmodifiableSet(tokens);
+
+    private CaptionResolver captionResolver = CaptionResolver.DEFAULT;
+    private Vocabulary vocabulary;
+    private boolean newTokensAllowed = true;
+    private boolean rememberNewTokens = false;
+
+    private List<TokenModelListener> listeners;
+
+    public TokenModel() {
+    }
+
+    /**
+     * Creates a model accepting tokens from the given vocabulary.
+     *
+     * @param vocabulary
+     *            the known tokens, or null to accept any token
+     */
+    public TokenModel(Vocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    /**
+     * Adds a token at the end, unless it is already included.
+     *
+     * @param tokenId
+     *            the token to add
+     * @return the change
+     */
+    public TokenDelta add(Object tokenId) {
+        return addAll(Collections.singleton(tokenId));
+    }
+
+    /**
+     * Adds the tokens that are not already included, at the end and in the
+     * given order.
+     *
+     * @param tokenIds
+     *            the tokens to add
+     * @return the change
+     */
+    public TokenDelta addAll(Collection<?> tokenIds) {
+        LinkedHashSet<Object> added = new LinkedHashSet<Object>();
+        for (Object tokenId : tokenIds) {
+            if (tokenId != null && tokens.add(tokenId)) {
+                added.add(tokenId);
+            }
+        }
+        return changed(added, Collections.emptySet());
+    }
+
+    /**
+     * Removes a token, if included.
+     *
+     * @param tokenId
+     *            the token to remove
+     * @return the change
+     */
+    public TokenDelta remove(Object tokenId) {
+        return removeAll(Collections.singleton(tokenId));
+    }
+
+    /**
+     * Removes the given tokens that are included.
+     *
+     * @param tokenIds
+     *            the tokens to remove
+     * @return the change
+     */
+    public TokenDelta removeAll(Collection<?> tokenIds) {
+        LinkedHashSet<Object> removed = new LinkedHashSet<Object>();
+        for (Object tokenId : tokenIds) {
+            if (tokens.remove(tokenId)) {
+                removed.add(tokenId);
+            }
+        }
+        return changed(Collections.emptySet(), removed);
+    }
+
+    /**
+     * Replaces all tokens. Tokens that remain keep their position, new ones
+     * are added at the end in the given order.
+     *
+     * @param tokenIds
+     *            the new tokens, null for none
+     * @return the change
+     */
+    public TokenDelta set(Collection<?> tokenIds) {
+        Set<?> target;
+        if (tokenIds == null) {
+            target = Collections.emptySet();
+        } else if (tokenIds instanceof Set) {
+            target = (Set<?>) tokenIds;
+        } else {
+            target = new LinkedHashSet<Object>(tokenIds);
+        }
+        LinkedHashSet<Object> removed = new LinkedHashSet<Object>();
+        for (Object tokenId : tokens) {
+            if (!target.contains(tokenId)) {
+                removed.add(tokenId);
+            }
+        }
+        tokens.removeAll(removed);
+        LinkedHashSet<Object> added = new LinkedHashSet<Object>();
+        for (Object tokenId : target) {
+            if (tokenId != null && tokens.add(tokenId)) {
+                added.add(tokenId);
+            }
+        }
+        return changed(added, removed);
+    }
+
+    /**
+     * Removes all tokens.
+     *
+     * @return the change
+     */
+    public TokenDelta clear() {
+        return set(null);
+    }
+
+    /**
+     * Selects the tokens that may be input by the user: known tokens, and new
+     * ones if {@link #isNewTokensAllowed()}. Does not change the model.
+     *
+     * @param tokenIds
+     *            the tokens input
+     * @return the accepted tokens, in the given order
+     */
+    public List<Object> accept(Collection<?> tokenIds) {
+        List<Object> accepted = new ArrayList<Object>(tokenIds.size());
+        for (Object tokenId : tokenIds) {
+            if (tokenId != null && (newTokensAllowed || isKnown(tokenId))) {
+                accepted.add(tokenId);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Adds the tokens input by the user that are accepted (see
+     * {@link #accept(Collection)}), and remembers the new ones in the
+     * vocabulary if {@link #isRememberNewTokens()}.
+     *
+     * @param tokenIds
+     *            the tokens input
+     * @return the change
+     */
+    public TokenDelta input(Collection<?> tokenIds) {
+        List<Object> accepted = accept(tokenIds);
+        if (rememberNewTokens && vocabulary != null) {
+            for (Object tokenId : accepted) {
+                if (!vocabulary.contains(tokenId)) {
+                    vocabulary.rememberToken(tokenId, getCaption(tokenId));
+                }
+            }
+        }
+        return addAll(accepted);
+    }
+
+    /**
+     * @param tokenId
+     *            the token
+     * @return true if the token is in the vocabulary; with no vocabulary, no
+     *         token is known
+     */
+    public boolean isKnown(Object tokenId) {
+        return vocabulary != null && vocabulary.contains(tokenId);
+    }
+
+    public boolean contains(Object tokenId) {
+        return tokens.contains(tokenId);
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    public boolean isEmpty() {
+        return tokens.isEmpty();
+    }
+
+    /**
+     * @return the tokens in order, as an unmodifiable live view
+     */
+    public Set<Object> getTokens() {
+        return tokensView;
+    }
+
+    /**
+     * @return the first token, null if there are none
+     */
+    public Object getFirst() {
+        return tokens.getFirst();
+    }
+
+    /**
+     * @return the last token, null if there are none
+     */
+    public Object getLast() {
+        return tokens.getLast();
+    }
+
+    /**
+     * @param tokenId
+     *            a token
+     * @return the token before the given one, null if it is the first or not
+     *         included
+     */
+    public Object getPrevious(Object tokenId) {
+        return tokens.getPrevious(tokenId);
+    }
+
+    /**
+     * @param tokenId
+     *            a token
+     * @return the token after the given one, null if it is the last or not
+     *         included
+     */
+    public Object getNext(Object tokenId) {
+        return tokens.getNext(tokenId);
+    }
+
+    /**
+     * @param tokenId
+     *            a token
+     * @return the position of the token, -1 if it is not included
+     */
+    public int indexOf(Object tokenId) {
+        return tokens.indexOf(tokenId);
+    }
+
+    /**
+     * @param index
+     *            a position, from 0 to {@link #size()} - 1
+     * @return the token at the position
+     * @throws IndexOutOfBoundsException
+     *             if there is no token at the position
+     */
+    public Object get(int index) {
+        return tokens.get(index);
+    }
+
+    /**
+     * Gets the caption of a token from the {@link CaptionResolver}.
+     *
+     * @param tokenId
+     *            the token
+     * @return the caption
+     */
+    public String getCaption(Object tokenId) {
+        return captionResolver.getCaption(tokenId);
+    }
+
+    /**
+     * Sets how tokens are captioned.
+     *
+     * @param captionResolver
+     *            the resolver, null for the string representation
+     */
+    public void setCaptionResolver(CaptionResolver captionResolver) {
+        this.captionResolver = captionResolver != null ? captionResolver
+                : CaptionResolver.DEFAULT;
+    }
+
+    public CaptionResolver getCaptionResolver() {
+        return captionResolver;
+    }
+
+    /**
+     * Sets the known tokens, used by {@link #accept(Collection)} and
+     * {@link #input(Collection)}.
+     *
+     * @param vocabulary
+     *            the vocabulary, null for none
+     */
+    public void setVocabulary(Vocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Sets whether tokens that are not in the vocabulary are accepted from
+     * user input. True by default.
+     *
+     * @param newTokensAllowed
+     */
+    public void setNewTokensAllowed(boolean newTokensAllowed) {
+        this.newTokensAllowed = newTokensAllowed;
+    }
+
+    public boolean isNewTokensAllowed() {
+        return newTokensAllowed;
+    }
+
+    /**
+     * Sets whether new tokens input by the user are added to the vocabulary.
+     * False by default.
+     *
+     * @param rememberNewTokens
+     */
+    public void setRememberNewTokens(boolean rememberNewTokens) {
+        this.rememberNewTokens = rememberNewTokens;
+    }
+
+    public boolean isRememberNewTokens() {
+        return rememberNewTokens;
+    }
+
+    public void addListener(TokenModelListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<TokenModelListener>(1);
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(TokenModelListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private TokenDelta changed(Set<Object> added, Set<Object> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return TokenDelta.EMPTY;
+        }
+        TokenDelta delta = new TokenDelta(added, removed);
+        if (listeners != null) {
+            for (TokenModelListener listener : new ArrayList<TokenModelListener>(
+                    listeners)) {
+                listener.tokensChanged(this, delta);
+            }
+        }
+        return delta;
+    }
+
+    @Override
+    public String toString() {
+        return tokens.toString();
+    }
+}
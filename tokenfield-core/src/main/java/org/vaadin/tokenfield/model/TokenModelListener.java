@@ -0,0 +1,18 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.Serializable;
+
+/**
+ * Notified after the tokens of a {@link TokenModel} have changed.
+ */
+@FunctionalInterface
+public interface TokenModelListener extends Serializable {
+
+    /**
+     * @param model
+     *            the model that changed
+     * @param delta
+     *            the tokens added and removed, never empty
+     */
+    public void tokensChanged(TokenModel model, TokenDelta delta);
+}
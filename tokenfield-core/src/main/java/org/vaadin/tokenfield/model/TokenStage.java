@@ -0,0 +1,146 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A lock-free staging area for token changes made by other threads, e.g
+ * background services adding suggested tokens. Any number of threads can
+ * stage additions and removals concurrently without locking; the owner of the
+ * tokens then drains them and applies them all as one change.
+ * <p>
+ * Staging reports whether a drain needs to be scheduled: only the first
+ * change staged after a drain does, so producers never schedule more than
+ * one pending drain between them.
+ * </p>
+ * <p>
+ * A scheduled drain does not survive serialization, so a deserialized stage
+ * asks for a drain again with the next staged change; changes staged before
+ * stay until then, or until the owner drains them.
+ * </p>
+ */
+public class TokenStage implements Serializable {
+
+    private static final long serialVersionUID = 5561394418830375541L;
+
+    private static final class Change implements Serializable {
+
+        private static final long serialVersionUID = -2216283907386516113L;
+
+        final Object tokenId;
+        final boolean add;
+
+        Change(Object tokenId, boolean add) {
+            this.tokenId = tokenId;
+            this.add = add;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<Change>();
+    private transient AtomicBoolean drainPending = new AtomicBoolean();
+
+    /**
+     * Stages the addition of a token. Safe to call from any thread.
+     *
+     * @param tokenId
+     *            the token to add
+     * @return true if the caller must schedule a drain
+     */
+    public boolean add(Object tokenId) {
+        return stage(tokenId, true);
+    }
+
+    /**
+     * Stages the removal of a token. Safe to call from any thread.
+     *
+     * @param tokenId
+     *            the token to remove
+     * @return true if the caller must schedule a drain
+     */
+    public boolean remove(Object tokenId) {
+        return stage(tokenId, false);
+    }
+
+    /**
+     * Stages the addition of tokens, in order. Safe to call from any thread.
+     *
+     * @param tokenIds
+     *            the tokens to add
+     * @return true if the caller must schedule a drain
+     */
+    public boolean addAll(Collection<?> tokenIds) {
+        return stageAll(tokenIds, true);
+    }
+
+    /**
+     * Stages the removal of tokens. Safe to call from any thread.
+     *
+     * @param tokenIds
+     *            the tokens to remove
+     * @return true if the caller must schedule a drain
+     */
+    public boolean removeAll(Collection<?> tokenIds) {
+        return stageAll(tokenIds, false);
+    }
+
+    /**
+     * @return true if no changes are staged
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Applies the staged changes to the given tokens, in the order they were
+     * staged, and forgets them. Changes staged while draining may or may not
+     * be included; if not, they will have asked for another drain.
+     *
+     * @param tokens
+     *            the tokens to change, owned by the calling thread
+     * @return true if the tokens changed
+     */
+    public boolean drainTo(Set<Object> tokens) {
+        drainPending.set(false);
+        boolean changed = false;
+        Change change;
+        while ((change = changes.poll()) != null) {
+            if (change.add) {
+                changed |= tokens.add(change.tokenId);
+            } else {
+                changed |= tokens.remove(change.tokenId);
+            }
+        }
+        return changed;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        drainPending = new AtomicBoolean();
+    }
+
+    private boolean stage(Object tokenId, boolean add) {
+        if (tokenId == null) {
+            throw new IllegalArgumentException("tokenId can not be null");
+        }
+        changes.offer(new Change(tokenId, add));
+        return drainPending.compareAndSet(false, true);
+    }
+
+    private boolean stageAll(Collection<?> tokenIds, boolean add) {
+        for (Object tokenId : tokenIds) {
+            if (tokenId == null) {
+                throw new IllegalArgumentException("tokenId can not be null");
+            }
+        }
+        for (Object tokenId : tokenIds) {
+            changes.offer(new Change(tokenId, add));
+        }
+        return !tokenIds.isEmpty() && drainPending.compareAndSet(false, true);
+    }
+}
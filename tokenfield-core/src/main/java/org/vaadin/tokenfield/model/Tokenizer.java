@@ -0,0 +1,489 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Splits text into tokens, e.g a list of tags typed or pasted by the user.
+ * Tokens are separated by any of a set of separator characters; optionally
+ * they can be quoted (so that they can contain separators, a doubled quote
+ * being a quote) and characters can be escaped. Surrounding whitespace is
+ * trimmed unless quoted, and empty tokens are left out.
+ * <p>
+ * The text is scanned once, without regular expressions and without
+ * allocating per character: a token without quotes or escapes is a single
+ * substring of the text, and the others are built in one buffer reused for
+ * the whole text. Tokens longer than {@link #setMaxTokenLength(int)} are
+ * skipped without being copied, so even multi-megabyte input costs little
+ * more than its tokens.
+ * </p>
+ * <p>
+ * A tokenizer can be shared once configured; tokenizing is safe for
+ * concurrent use.
+ * </p>
+ *
+ * <pre>
+ * Tokenizer tokenizer = new Tokenizer(",;\n");
+ * tokenizer.setQuote('"');
+ * tokenizer.tokenize("a, \"b, c\" ;d"); // [a, b, c, d]
+ * </pre>
+ */
+public class Tokenizer implements Serializable {
+
+    private static final long serialVersionUID = -8425081563932611028L;
+
+    /**
+     * No quote or escape character.
+     */
+    public static final int NONE = -1;
+
+    private final String separators;
+
+    /* bits of the separators below 128 */
+    private final long lowSeparators;
+    private final long highSeparators;
+    /* the separators from 128 up, null if none */
+    private final String otherSeparators;
+
+    private int quote = NONE;
+    private int escape = NONE;
+    private boolean trim = true;
+    private int maxTokenLength = Integer.MAX_VALUE;
+
+    /**
+     * Creates a tokenizer splitting at any of the given characters, trimming
+     * tokens, without quotes and escapes.
+     *
+     * @param separators
+     *            the separator characters, e.g ",;\n"
+     */
+    public Tokenizer(String separators) {
+        if (separators == null || separators.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "separators can not be null or empty");
+        }
+        this.separators = separators;
+        long low = 0;
+        long high = 0;
+        StringBuilder other = new StringBuilder();
+        for (int i = 0; i < separators.length(); i++) {
+            char c = separators.charAt(i);
+            if (c < 64) {
+                low |= 1L << c;
+            } else if (c < 128) {
+                high |= 1L << c;
+            } else {
+                other.append(c);
+            }
+        }
+        lowSeparators = low;
+        highSeparators = high;
+        otherSeparators = other.length() == 0 ? null : other.toString();
+    }
+
+    public String getSeparators() {
+        return separators;
+    }
+
+    /**
+     * Sets the character that quotes tokens, e.g '"'. A token starting with it
+     * (after whitespace) extends to the next single quote character,
+     * separators and whitespace included; a doubled quote character stands
+     * for itself.
+     *
+     * @param quote
+     *            the quote character, or {@link #NONE} (the default)
+     */
+    public void setQuote(int quote) {
+        checkSpecial(quote, "quote");
+        this.quote = quote;
+    }
+
+    public int getQuote() {
+        return quote;
+    }
+
+    /**
+     * Sets the character that escapes the next one, e.g '\\', so that
+     * separators, quotes and whitespace can be part of tokens.
+     *
+     * @param escape
+     *            the escape character, or {@link #NONE} (the default)
+     */
+    public void setEscape(int escape) {
+        checkSpecial(escape, "escape");
+        this.escape = escape;
+    }
+
+    public int getEscape() {
+        return escape;
+    }
+
+    /**
+     * Sets whether whitespace around tokens is removed, like
+     * {@link String#trim()} does. Whitespace that is quoted or escaped is
+     * kept.
+     *
+     * @param trim
+     *            true to trim tokens (the default)
+     */
+    public void setTrim(boolean trim) {
+        this.trim = trim;
+    }
+
+    public boolean isTrim() {
+        return trim;
+    }
+
+    /**
+     * Sets the maximum length of a token; longer tokens are left out.
+     *
+     * @param maxTokenLength
+     *            the maximum length, unlimited by default
+     */
+    public void setMaxTokenLength(int maxTokenLength) {
+        if (maxTokenLength < 1) {
+            throw new IllegalArgumentException(
+                    "maxTokenLength must be positive");
+        }
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    public int getMaxTokenLength() {
+        return maxTokenLength;
+    }
+
+    /**
+     * Splits text into tokens.
+     *
+     * @param text
+     *            the text
+     * @return the tokens, in order
+     */
+    public List<String> tokenize(CharSequence text) {
+        List<String> tokens = new ArrayList<String>();
+        tokenize(text, tokens::add);
+        return tokens;
+    }
+
+    /**
+     * Splits text into tokens, passing each one on as soon as it is found.
+     *
+     * @param text
+     *            the text
+     * @param consumer
+     *            receives the tokens, in order
+     */
+    public void tokenize(CharSequence text, Consumer<? super String> consumer) {
+        scan(text, true, new Scan(), token -> {
+            consumer.accept(token);
+            return true;
+        });
+    }
+
+    /**
+     * Splits the text read from a reader into tokens, holding at most one
+     * chunk of the text at a time. A token whose text (including quotes and
+     * escapes) is longer than a chunk is skipped like a token longer than
+     * {@link #getMaxTokenLength()}. The reader is not closed.
+     *
+     * @param reader
+     *            the text
+     * @param chunkSize
+     *            the number of characters held at a time, at least 16
+     * @param consumer
+     *            receives the tokens in order, and returns false to stop
+     *            reading
+     * @return true if all text was read, false if the consumer stopped
+     * @throws IOException
+     *             if reading fails
+     */
+    public boolean tokenize(Reader reader, int chunkSize,
+            Predicate<? super String> consumer) throws IOException {
+        return tokenize(reader, chunkSize, consumer, null);
+    }
+
+    /**
+     * Splits the text read from a reader into tokens like
+     * {@link #tokenize(Reader, int, Predicate)}, telling which tokens are
+     * skipped because they are too long.
+     *
+     * @param reader
+     *            the text
+     * @param chunkSize
+     *            the number of characters held at a time, at least 16
+     * @param consumer
+     *            receives the tokens in order, and returns false to stop
+     *            reading
+     * @param skipListener
+     *            called for each token skipped because it is longer than
+     *            {@link #getMaxTokenLength()} or than a chunk, or null
+     * @return true if all text was read, false if the consumer stopped
+     * @throws IOException
+     *             if reading fails
+     */
+    public boolean tokenize(Reader reader, int chunkSize,
+            Predicate<? super String> consumer, Runnable skipListener)
+            throws IOException {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("chunkSize must be at least 16");
+        }
+        // one spare character, so that the separator or the end of the text
+        // after a token of chunkSize characters can be seen
+        char[] chunk = new char[chunkSize + 1];
+        int length = 0;
+        Scan scan = new Scan();
+        scan.skipListener = skipListener;
+        while (true) {
+            int read = reader.read(chunk, length, chunk.length - length);
+            boolean last = read < 0;
+            if (!last) {
+                length += read;
+            }
+            int resume = scan(CharBuffer.wrap(chunk, 0, length), last, scan,
+                    consumer);
+            if (resume < 0) {
+                return false;
+            } else if (last) {
+                return true;
+            }
+            if (resume == 0 && length == chunk.length) {
+                // the token does not fit, skip the rest of it; characters
+                // held back (a trailing quote or escape) are scanned again
+                scan.state = scan.unfinishedState;
+                scan.skipped();
+                resume = scan.unfinishedAt;
+            }
+            System.arraycopy(chunk, resume, chunk, 0, length - resume);
+            length -= resume;
+        }
+    }
+
+    /*
+     * What a scan continues with, when text is scanned in chunks
+     */
+    private static final class Scan {
+
+        int state = START;
+        /* the state to skip an unfinished token with, and where from */
+        int unfinishedState;
+        int unfinishedAt;
+        StringBuilder buffer;
+        Runnable skipListener;
+
+        void skipped() {
+            if (skipListener != null) {
+                skipListener.run();
+            }
+        }
+
+        StringBuilder buffer() {
+            if (buffer == null) {
+                buffer = new StringBuilder();
+            }
+            buffer.setLength(0);
+            return buffer;
+        }
+    }
+
+    private static final int START = 0;
+    /* skipping a token, inside quotes */
+    private static final int SKIP_QUOTED = 1;
+    /* skipping a token, outside quotes */
+    private static final int SKIP_UNQUOTED = 2;
+
+    /*
+     * Scans text for tokens. Unless it is the last of the input, a token that
+     * is not terminated by a separator is left for the next scan: the index
+     * where the next scan must start is returned, or -1 if the consumer
+     * stopped.
+     */
+    private int scan(CharSequence text, boolean last, Scan scan,
+            Predicate<? super String> consumer) {
+        final int n = text.length();
+        int i = 0;
+        while (true) {
+            final boolean skip = scan.state != START;
+            boolean quoted = scan.state == SKIP_QUOTED;
+            scan.state = START;
+            if (trim && !skip) {
+                while (i < n && isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+            }
+            final int start = i;
+            // the token is text[start, i) until it has to be copied
+            StringBuilder buffer = null;
+            // length of the buffer that must not be trimmed
+            int kept = 0;
+            boolean tooLong = skip;
+            // where to continue if the token is unfinished
+            int unfinished = -1;
+
+            if (!skip && i < n && text.charAt(i) == quote) {
+                buffer = scan.buffer();
+                quoted = true;
+                i++;
+            }
+            if (quoted) {
+                while (i < n) {
+                    char c = text.charAt(i++);
+                    if (c == escape || c == quote) {
+                        if (i == n && !last) {
+                            // escaped character or doubled quote unknown
+                            i--;
+                            break;
+                        } else if (c == escape && i < n) {
+                            c = text.charAt(i++);
+                        } else if (c == quote) {
+                            if (i < n && text.charAt(i) == quote) {
+                                i++;
+                            } else {
+                                quoted = false;
+                                break;
+                            }
+                        }
+                    }
+                    if (!tooLong) {
+                        buffer.append(c);
+                        tooLong = buffer.length() > maxTokenLength;
+                    }
+                }
+                if (quoted) {
+                    if (!last) {
+                        unfinished = i;
+                    } else {
+                        quoted = false;
+                    }
+                }
+                if (buffer != null) {
+                    kept = buffer.length();
+                }
+            }
+
+            while (unfinished < 0 && i < n) {
+                char c = text.charAt(i);
+                if (isSeparator(c)) {
+                    break;
+                }
+                if (c == escape && i + 1 == n && !last) {
+                    unfinished = i;
+                    break;
+                }
+                if (c == escape && i + 1 < n) {
+                    if (buffer == null && !tooLong) {
+                        buffer = scan.buffer();
+                        buffer.append(text, start, i);
+                    }
+                    if (!tooLong) {
+                        buffer.append(text.charAt(i + 1));
+                        kept = buffer.length();
+                        tooLong = kept > maxTokenLength;
+                    }
+                    i += 2;
+                    continue;
+                }
+                if (buffer != null && !tooLong) {
+                    buffer.append(c);
+                    tooLong = !isWhitespace(c)
+                            && buffer.length() > maxTokenLength;
+                }
+                i++;
+            }
+            if (unfinished < 0 && i == n && !last) {
+                unfinished = n;
+            }
+
+            if (unfinished >= 0) {
+                if (skip) {
+                    scan.state = quoted ? SKIP_QUOTED : SKIP_UNQUOTED;
+                    return unfinished;
+                }
+                scan.unfinishedState = quoted ? SKIP_QUOTED : SKIP_UNQUOTED;
+                scan.unfinishedAt = unfinished;
+                return start;
+            }
+
+            if (tooLong) {
+                if (!skip) {
+                    scan.skipped();
+                }
+            } else {
+                String token = null;
+                if (buffer != null) {
+                    int length = buffer.length();
+                    if (trim) {
+                        while (length > kept
+                                && isWhitespace(buffer.charAt(length - 1))) {
+                            length--;
+                        }
+                    }
+                    if (length > maxTokenLength) {
+                        scan.skipped();
+                    } else if (length > 0) {
+                        token = buffer.substring(0, length);
+                    }
+                } else {
+                    int end = i;
+                    if (trim) {
+                        while (end > start
+                                && isWhitespace(text.charAt(end - 1))) {
+                            end--;
+                        }
+                    }
+                    if (end - start > maxTokenLength) {
+                        scan.skipped();
+                    } else if (end > start) {
+                        token = text.subSequence(start, end).toString();
+                    }
+                }
+                if (token != null && !consumer.test(token)) {
+                    return -1;
+                }
+            }
+
+            if (i >= n) {
+                return n;
+            }
+            // skip the separator
+            i++;
+        }
+    }
+
+    /**
+     * @param c
+     *            a character
+     * @return true if the character separates tokens
+     */
+    public boolean isSeparator(char c) {
+        if (c < 64) {
+            return (lowSeparators & (1L << c)) != 0;
+        } else if (c < 128) {
+            return (highSeparators & (1L << c)) != 0;
+        }
+        return otherSeparators != null && otherSeparators.indexOf(c) >= 0;
+    }
+
+    private static boolean isWhitespace(char c) {
+        // as String.trim()
+        return c <= ' ';
+    }
+
+    private void checkSpecial(int c, String name) {
+        if (c == NONE) {
+            return;
+        }
+        if (c < 0 || c > Character.MAX_VALUE) {
+            throw new IllegalArgumentException(name + " is not a character");
+        }
+        if (isSeparator((char) c)) {
+            throw new IllegalArgumentException(name + " can not be a separator");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.vaadin.tokenfield.model;
+
+import java.io.Serializable;
+
+/**
+ * The tokens known to a {@link TokenModel}: tokens that can always be input,
+ * and where new tokens input by the user are remembered.
+ */
+public interface Vocabulary extends Serializable {
+
+    /**
+     * @param tokenId
+     *            the token
+     * @return true if the token is known
+     */
+    public boolean contains(Object tokenId);
+
+    /**
+     * Gets the caption of a known token. Defaults to the string
+     * representation of the token.
+     *
+     * @param tokenId
+     *            the token
+     * @return the caption
+     */
+    public default String getCaption(Object tokenId) {
+        return String.valueOf(tokenId);
+    }
+
+    /**
+     * Remembers a new token input by the user, so that it is known from now
+     * on. Defaults to doing nothing, i.e a read-only vocabulary.
+     *
+     * @param tokenId
+     *            the new token
+     * @param caption
+     *            the caption of the new token
+     * @return true if the token was added to the vocabulary
+     */
+    public default boolean rememberToken(Object tokenId, String caption) {
+        return false;
+    }
+}
@@ -0,0 +1,182 @@
+package org.vaadin.tokenfield.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ORSetTest {
+
+    @Test
+    public void addAndRemove() {
+        ORSet set = new ORSet("a");
+        set.addAll(Arrays.asList("x", "y", "x"));
+        assertEquals(Arrays.asList("x", "y"), new ArrayList<Object>(
+                set.getTokens()));
+        set.removeAll(Arrays.asList("x", "z"));
+        assertEquals(Collections.singleton("y"), set.getTokens());
+    }
+
+    @Test
+    public void concurrentAddWins() {
+        ORSet a = new ORSet("a");
+        ORSet b = new ORSet("b");
+        b.merge(a.addAll(Arrays.asList("x")));
+
+        // a removes x while b adds it again
+        ORSet.Delta removal = a.removeAll(Arrays.asList("x"));
+        ORSet.Delta addition = b.addAll(Arrays.asList("x"));
+        a.merge(addition);
+        b.merge(removal);
+
+        assertTrue(a.contains("x"));
+        assertTrue(b.contains("x"));
+    }
+
+    @Test
+    public void removalMergedBeforeItsAdditionWins() {
+        ORSet a = new ORSet("a");
+        ORSet b = new ORSet("b");
+        ORSet c = new ORSet("c");
+        ORSet.Delta addition = a.addAll(Arrays.asList("x"));
+        b.merge(addition);
+        ORSet.Delta removal = b.removeAll(Arrays.asList("x"));
+
+        TokenDelta merged = c.merge(removal);
+        assertTrue(merged.isEmpty());
+        merged = c.merge(addition);
+        assertTrue(merged.isEmpty());
+        assertFalse(c.contains("x"));
+    }
+
+    @Test
+    public void mergeReportsChanges() {
+        ORSet a = new ORSet("a");
+        ORSet b = new ORSet("b");
+        TokenDelta merged = b.merge(a.addAll(Arrays.asList("x", "y")));
+        assertEquals(new HashSet<Object>(Arrays.asList("x", "y")),
+                merged.getAdded());
+        assertTrue(merged.getRemoved().isEmpty());
+
+        merged = b.merge(a.removeAll(Arrays.asList("y")));
+        assertTrue(merged.getAdded().isEmpty());
+        assertEquals(Collections.singleton("y"), merged.getRemoved());
+    }
+
+    @Test
+    public void mergeIsIdempotent() {
+        List<ORSet.Delta> deltas = randomDeltas(new Random(1), 3, 200);
+        ORSet once = new ORSet("once");
+        ORSet twice = new ORSet("twice");
+        for (ORSet.Delta delta : deltas) {
+            once.merge(delta);
+            twice.merge(delta);
+            assertTrue(twice.merge(delta).isEmpty());
+        }
+        assertEquals(once.getTokens(), twice.getTokens());
+    }
+
+    @Test
+    public void mergeIsCommutative() {
+        Random random = new Random(2);
+        List<ORSet.Delta> deltas = randomDeltas(random, 4, 300);
+        Set<Object> expected = mergeAll("in order", deltas).getTokens();
+        for (int i = 0; i < 20; i++) {
+            List<ORSet.Delta> shuffled = new ArrayList<ORSet.Delta>(deltas);
+            Collections.shuffle(shuffled, random);
+            assertEquals(expected, mergeAll("shuffled", shuffled)
+                    .getTokens());
+        }
+    }
+
+    @Test
+    public void mergeIsAssociative() {
+        List<ORSet.Delta> deltas = randomDeltas(new Random(3), 3, 300);
+        int split = deltas.size() / 3;
+
+        // (a + b) + c, where a replica first merged a and b, then forwarded
+        // what it had to one that merges c
+        ORSet left = mergeAll("left", deltas.subList(0, 2 * split));
+        ORSet leftCopy = new ORSet("left-copy", left);
+        for (ORSet.Delta delta : deltas.subList(2 * split, deltas.size())) {
+            leftCopy.merge(delta);
+        }
+
+        // a + (b + c)
+        ORSet right = mergeAll("right", deltas.subList(split, deltas.size()));
+        ORSet rightCopy = new ORSet("right-copy", right);
+        for (ORSet.Delta delta : deltas.subList(0, split)) {
+            rightCopy.merge(delta);
+        }
+
+        assertEquals(leftCopy.getTokens(), rightCopy.getTokens());
+        assertEquals(mergeAll("all", deltas).getTokens(),
+                leftCopy.getTokens());
+    }
+
+    @Test
+    public void replicasConverge() {
+        Random random = new Random(4);
+        List<ORSet> replicas = new ArrayList<ORSet>();
+        for (int i = 0; i < 5; i++) {
+            replicas.add(new ORSet("r" + i));
+        }
+        List<ORSet.Delta> deltas = new ArrayList<ORSet.Delta>();
+        for (int i = 0; i < 500; i++) {
+            ORSet replica = replicas.get(random.nextInt(replicas.size()));
+            List<Object> tokens = Arrays.asList("t" + random.nextInt(10));
+            deltas.add(random.nextBoolean() ? replica.addAll(tokens)
+                    : replica.removeAll(tokens));
+            // deliver a random earlier delta to a random replica
+            replicas.get(random.nextInt(replicas.size())).merge(
+                    deltas.get(random.nextInt(deltas.size())));
+        }
+        for (ORSet replica : replicas) {
+            for (ORSet.Delta delta : deltas) {
+                replica.merge(delta);
+            }
+        }
+        for (ORSet replica : replicas) {
+            assertEquals(replicas.get(0).getTokens(), replica.getTokens());
+        }
+    }
+
+    /*
+     * Random changes of some replicas that see each other's changes late
+     */
+    private static List<ORSet.Delta> randomDeltas(Random random,
+            int replicaCount, int count) {
+        List<ORSet> replicas = new ArrayList<ORSet>();
+        for (int i = 0; i < replicaCount; i++) {
+            replicas.add(new ORSet("r" + i));
+        }
+        List<ORSet.Delta> deltas = new ArrayList<ORSet.Delta>();
+        for (int i = 0; i < count; i++) {
+            ORSet replica = replicas.get(random.nextInt(replicaCount));
+            if (!deltas.isEmpty() && random.nextInt(3) == 0) {
+                replica.merge(deltas.get(random.nextInt(deltas.size())));
+            }
+            List<Object> tokens = Arrays.asList("t" + random.nextInt(8));
+            deltas.add(random.nextBoolean() ? replica.addAll(tokens)
+                    : replica.removeAll(tokens));
+        }
+        return deltas;
+    }
+
+    private static ORSet mergeAll(String replica, List<ORSet.Delta> deltas) {
+        ORSet set = new ORSet(replica);
+        for (ORSet.Delta delta : deltas) {
+            set.merge(delta);
+        }
+        return set;
+    }
+}
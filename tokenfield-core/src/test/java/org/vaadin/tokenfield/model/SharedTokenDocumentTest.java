@@ -0,0 +1,83 @@
+package org.vaadin.tokenfield.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class SharedTokenDocumentTest {
+
+    private static final Runnable IGNORE = () -> {
+    };
+
+    private static String newName() {
+        return "document-" + System.nanoTime();
+    }
+
+    @Test
+    public void getSeedsNewDocument() {
+        String name = newName();
+        SharedTokenDocument document = SharedTokenDocument.get(name,
+                Arrays.asList("a", "b"));
+        assertEquals(new HashSet<Object>(Arrays.asList("a", "b")),
+                document.getTokens());
+        // already registered, the tokens are ignored
+        assertSame(document,
+                SharedTokenDocument.get(name, Arrays.asList("c")));
+        assertEquals(new HashSet<Object>(Arrays.asList("a", "b")),
+                document.join(IGNORE, Arrays.asList("c")).getTokens());
+    }
+
+    @Test
+    public void firstReplicaSeedsDocument() {
+        SharedTokenDocument document = SharedTokenDocument.get(newName());
+        SharedTokenDocument.Replica empty = document.join(IGNORE);
+        SharedTokenDocument.Replica first = document.join(IGNORE,
+                Arrays.asList("a", "b"));
+        SharedTokenDocument.Replica second = document.join(IGNORE,
+                Arrays.asList("c"));
+
+        assertEquals(new HashSet<Object>(Arrays.asList("a", "b")),
+                first.getTokens());
+        assertEquals(first.getTokens(), second.getTokens());
+        // replicas that joined before get the seed as a change
+        assertEquals(first.getTokens(), empty.drain().getAdded());
+        assertEquals(first.getTokens(), empty.getTokens());
+    }
+
+    @Test
+    public void writtenDocumentIsNotSeeded() {
+        SharedTokenDocument document = SharedTokenDocument.get(newName());
+        SharedTokenDocument.Replica replica = document.join(IGNORE);
+        replica.addAll(Arrays.asList("a"));
+        replica.removeAll(Arrays.asList("a"));
+
+        assertEquals(Collections.emptySet(),
+                document.join(IGNORE, Arrays.asList("b")).getTokens());
+    }
+
+    @Test
+    public void unusedDocumentIsForgotten() throws InterruptedException {
+        String name = newName();
+        SharedTokenDocument document = SharedTokenDocument.get(name,
+                Arrays.asList("a"));
+        document.join(IGNORE).leave();
+        WeakReference<SharedTokenDocument> reference = new WeakReference<SharedTokenDocument>(
+                document);
+        document = null;
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        SharedTokenDocument next = SharedTokenDocument.get(name);
+        assertNotSame(reference.get(), next);
+        assertEquals(Collections.emptySet(), next.getTokens());
+    }
+}
@@ -0,0 +1,134 @@
+package org.vaadin.tokenfield.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TokenImportTest {
+
+    @Test
+    public void importsInBoundedBatches() throws IOException {
+        int entries = 20000;
+        // every tenth entry repeats an earlier one
+        int unique = entries - entries / 10;
+
+        TokenImport tokenImport = new TokenImport(csvTokenizer());
+        tokenImport.setBatchSize(500);
+        tokenImport.setChunkSize(1024);
+        List<TokenImport.Progress> reported = new ArrayList<TokenImport.Progress>();
+        tokenImport.setProgressListener(reported::add);
+
+        TokenModel model = new TokenModel();
+        List<Integer> batchSizes = new ArrayList<Integer>();
+        model.addListener((m, delta) -> batchSizes.add(delta.getAdded()
+                .size()));
+        TokenImport.Progress progress = tokenImport.run(new CsvReader(
+                entries), model);
+
+        assertEquals(unique, progress.getImported());
+        assertEquals(entries - unique, progress.getDuplicates());
+        assertEquals(0, progress.getSkipped());
+        assertTrue(progress.isComplete());
+        assertFalse(progress.isLimitReached());
+        assertEquals(unique, model.size());
+        assertTrue(model.contains("tag, 1"));
+        for (int size : batchSizes) {
+            assertTrue(size <= 500);
+        }
+        assertEquals(batchSizes.size() + 1, reported.size());
+        assertTrue(reported.get(reported.size() - 1).isComplete());
+    }
+
+    @Test
+    public void dropsPresentTokens() throws IOException {
+        TokenModel model = new TokenModel();
+        model.addAll(Arrays.asList("a", "c"));
+        TokenImport.Progress progress = new TokenImport(csvTokenizer()).run(
+                new StringReader("a, b, c, b, d"), model);
+        assertEquals(2, progress.getImported());
+        assertEquals(3, progress.getDuplicates());
+        assertEquals(Arrays.asList("a", "c", "b", "d"), new ArrayList<Object>(
+                model.getTokens()));
+    }
+
+    @Test
+    public void countsSkippedTokens() throws IOException {
+        Tokenizer tokenizer = csvTokenizer();
+        tokenizer.setMaxTokenLength(20);
+        TokenImport tokenImport = new TokenImport(tokenizer);
+        tokenImport.setChunkSize(32);
+        TokenModel model = new TokenModel();
+        TokenImport.Progress progress = tokenImport.run(new StringReader(
+                "a, 0123456789abcdefghijk, \"0123456789abcdefghij"
+                        + "0123456789abcdefghij\", b"), model);
+        assertEquals(2, progress.getImported());
+        assertEquals(2, progress.getSkipped());
+    }
+
+    @Test
+    public void stopsAtLimit() throws IOException {
+        TokenImport tokenImport = new TokenImport(csvTokenizer());
+        tokenImport.setMaxTokens(1000);
+        TokenModel model = new TokenModel();
+        TokenImport.Progress progress = tokenImport.run(new CsvReader(20000),
+                model);
+        assertTrue(progress.isLimitReached());
+        assertEquals(1000, progress.getImported());
+        assertEquals(1000, model.size());
+    }
+
+    static Tokenizer csvTokenizer() {
+        Tokenizer tokenizer = new Tokenizer(",\n");
+        tokenizer.setQuote('"');
+        return tokenizer;
+    }
+
+    /*
+     * Generates lines of "tag, \"quoted, tag\"" entries, never holding more
+     * than one entry
+     */
+    static final class CsvReader extends Reader {
+
+        private final int entries;
+        private final Random random = new Random(4711);
+        private int entry;
+        private String line = "";
+        private int position;
+
+        CsvReader(int entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (position == line.length()) {
+                if (entry == entries) {
+                    return -1;
+                }
+                int id = entry % 10 == 9 ? random.nextInt(entry) : entry;
+                id -= id / 10;
+                line = (id % 2 == 0 ? "tag" + id : "\"tag, " + id + "\"")
+                        + (++entry % 8 == 0 ? "\n" : ", ");
+                position = 0;
+            }
+            int count = Math.min(len, line.length() - position);
+            line.getChars(position, position + count, cbuf, off);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.vaadin.tokenfield.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TokenModelTest {
+
+    @Test
+    public void addsInOrderWithoutDuplicates() {
+        TokenModel model = new TokenModel();
+        TokenDelta delta = model.addAll(Arrays.asList("a", "b", "a", null));
+        assertEquals(Arrays.asList("a", "b"), tokens(model));
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<Object>(
+                delta.getAdded()));
+        assertSame(TokenDelta.EMPTY, model.add("b"));
+    }
+
+    @Test
+    public void setKeepsPositionOfRemainingTokens() {
+        TokenModel model = new TokenModel();
+        model.addAll(Arrays.asList("a", "b", "c"));
+        TokenDelta delta = model.set(Arrays.asList("d", "c", "a"));
+        assertEquals(Arrays.asList("a", "c", "d"), tokens(model));
+        assertEquals(Collections.singleton("d"), delta.getAdded());
+        assertEquals(Collections.singleton("b"), delta.getRemoved());
+    }
+
+    @Test
+    public void notifiesListenersOfChangesOnly() {
+        TokenModel model = new TokenModel();
+        List<TokenDelta> deltas = new ArrayList<TokenDelta>();
+        model.addListener((m, delta) -> deltas.add(delta));
+        model.add("a");
+        model.add("a");
+        model.remove("b");
+        model.clear();
+        assertEquals(2, deltas.size());
+        assertEquals(Collections.singleton("a"), deltas.get(1).getRemoved());
+    }
+
+    @Test
+    public void acceptsKnownTokensOnlyIfNewAreNotAllowed() {
+        SimpleVocabulary vocabulary = new SimpleVocabulary();
+        vocabulary.rememberToken("known", "Known");
+        TokenModel model = new TokenModel(vocabulary);
+        assertEquals(Arrays.asList("known", "new"),
+                model.accept(Arrays.asList("known", "new")));
+        model.setNewTokensAllowed(false);
+        assertEquals(Arrays.asList("known"),
+                model.accept(Arrays.asList("known", "new")));
+    }
+
+    @Test
+    public void inputRemembersNewTokens() {
+        SimpleVocabulary vocabulary = new SimpleVocabulary();
+        TokenModel model = new TokenModel(vocabulary);
+        model.input(Arrays.asList("a"));
+        assertFalse(vocabulary.contains("a"));
+        model.setRememberNewTokens(true);
+        model.input(Arrays.asList("b"));
+        assertTrue(vocabulary.contains("b"));
+        assertEquals(Arrays.asList("a", "b"), tokens(model));
+    }
+
+    @Test
+    public void positionsFollowChanges() {
+        TokenModel model = new TokenModel();
+        List<Object> expected = new ArrayList<Object>();
+        Random random = new Random(4711);
+        for (int i = 0; i < 5000; i++) {
+            Integer token = random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                model.remove(token);
+                expected.remove(token);
+            } else if (!expected.contains(token)) {
+                model.add(token);
+                expected.add(token);
+            }
+            if (i % 100 == 0) {
+                assertPositions(expected, model);
+            }
+        }
+        assertPositions(expected, model);
+        model.clear();
+        assertPositions(Collections.emptyList(), model);
+    }
+
+    @Test
+    public void serializedModelKeepsPositions() throws Exception {
+        TokenModel model = new TokenModel();
+        for (int i = 0; i < 100; i++) {
+            model.add("t" + i);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            model.remove("t" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).writeObject(model);
+        TokenModel copy = (TokenModel) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertPositions(tokens(model), copy);
+        copy.add("new");
+        assertEquals(tokens(model).size(), copy.indexOf("new"));
+    }
+
+    private static void assertPositions(List<Object> expected,
+            TokenModel model) {
+        assertEquals(expected, tokens(model));
+        assertEquals(expected.isEmpty() ? null : expected.get(0),
+                model.getFirst());
+        assertEquals(expected.isEmpty() ? null
+                : expected.get(expected.size() - 1), model.getLast());
+        for (int i = 0; i < expected.size(); i++) {
+            Object token = expected.get(i);
+            assertEquals(token, model.get(i));
+            assertEquals(i, model.indexOf(token));
+            assertEquals(i == 0 ? null : expected.get(i - 1),
+                    model.getPrevious(token));
+            assertEquals(i == expected.size() - 1 ? null
+                    : expected.get(i + 1), model.getNext(token));
+        }
+        assertEquals(-1, model.indexOf("missing"));
+    }
+
+    private static List<Object> tokens(TokenModel model) {
+        return new ArrayList<Object>(model.getTokens());
+    }
+}
@@ -0,0 +1,47 @@
+package org.vaadin.tokenfield.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TokenStageTest {
+
+    @Test
+    public void onlyFirstChangeAfterDrainSchedules() {
+        TokenStage stage = new TokenStage();
+        assertTrue(stage.add("a"));
+        assertFalse(stage.addAll(Arrays.asList("b", "c")));
+        assertFalse(stage.remove("a"));
+        Set<Object> tokens = new LinkedHashSet<Object>();
+        assertTrue(stage.drainTo(tokens));
+        assertEquals(Arrays.asList("b", "c"), new ArrayList<Object>(tokens));
+        assertTrue(stage.isEmpty());
+        assertTrue(stage.removeAll(Arrays.asList("b")));
+    }
+
+    @Test
+    public void deserializedStageSchedulesAgain() throws Exception {
+        TokenStage stage = new TokenStage();
+        assertTrue(stage.add("a"));
+        // the scheduled drain is lost with the session
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).writeObject(stage);
+        TokenStage copy = (TokenStage) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertTrue(copy.add("b"));
+        Set<Object> tokens = new LinkedHashSet<Object>();
+        copy.drainTo(tokens);
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<Object>(tokens));
+    }
+}
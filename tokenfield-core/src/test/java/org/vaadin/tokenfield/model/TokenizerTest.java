@@ -0,0 +1,208 @@
+package org.vaadin.tokenfield.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TokenizerTest {
+
+    @Test
+    public void splitsAtAnySeparator() {
+        Tokenizer tokenizer = new Tokenizer(",;\n");
+        assertEquals(Arrays.asList("a", "b", "c", "d"),
+                tokenizer.tokenize("a,b;c\nd"));
+    }
+
+    @Test
+    public void trimsAndDropsEmptyTokens() {
+        Tokenizer tokenizer = new Tokenizer(",");
+        assertEquals(Arrays.asList("a", "b c"),
+                tokenizer.tokenize(" , a ,,\t b c ,  "));
+        assertEquals(Collections.emptyList(), tokenizer.tokenize(""));
+        assertEquals(Collections.emptyList(), tokenizer.tokenize(" , ,"));
+    }
+
+    @Test
+    public void keepsWhitespaceWithoutTrim() {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setTrim(false);
+        assertEquals(Arrays.asList(" a ", " "), tokenizer.tokenize(" a ,, "));
+    }
+
+    @Test
+    public void quotedTokensContainSeparators() {
+        Tokenizer tokenizer = new Tokenizer(",;");
+        tokenizer.setQuote('"');
+        assertEquals(Arrays.asList("a", "b, c", "d"),
+                tokenizer.tokenize("a, \"b, c\" ;d"));
+        assertEquals(Arrays.asList("say \"hi\""),
+                tokenizer.tokenize("\"say \"\"hi\"\"\""));
+        assertEquals(Arrays.asList(" x "), tokenizer.tokenize("\" x \""));
+    }
+
+    @Test
+    public void unterminatedQuoteEndsWithText() {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setQuote('"');
+        assertEquals(Arrays.asList("a", "b, c"),
+                tokenizer.tokenize("a, \"b, c"));
+    }
+
+    @Test
+    public void escapedCharacters() {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setEscape('\\');
+        assertEquals(Arrays.asList("a,b", "c\\"),
+                tokenizer.tokenize("a\\,b, c\\\\"));
+        assertEquals(Arrays.asList(" a"), tokenizer.tokenize("\\ a"));
+    }
+
+    @Test
+    public void skipsTooLongTokens() {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setQuote('"');
+        tokenizer.setMaxTokenLength(3);
+        assertEquals(Arrays.asList("abc", "d"),
+                tokenizer.tokenize("abc, abcd, \"abcd\", d"));
+    }
+
+    @Test
+    public void nonAsciiSeparators() {
+        Tokenizer tokenizer = new Tokenizer("\u3001|");
+        assertEquals(Arrays.asList("a", "b", "c"),
+                tokenizer.tokenize("a\u3001b|c"));
+        assertTrue(tokenizer.isSeparator('|'));
+        assertFalse(tokenizer.isSeparator('a'));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quoteCanNotBeSeparator() {
+        new Tokenizer(",\"").setQuote('"');
+    }
+
+    @Test
+    public void readerGivesSameTokensAsText() throws IOException {
+        Tokenizer tokenizer = new Tokenizer(",;\n");
+        tokenizer.setQuote('"');
+        tokenizer.setEscape('\\');
+        String[] tokens = { "a", "b c", " d ", "\"e, f\"", "\"g\"\"h\"",
+                "i\\,j", "\"k\\\"l\"", "0123456789abcd" };
+        String[] separators = { ",", ";", "\n", " , ", ",,", "\n\n" };
+        Random random = new Random(4711);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder text = new StringBuilder();
+            int count = random.nextInt(20);
+            for (int t = 0; t < count; t++) {
+                text.append(tokens[random.nextInt(tokens.length)]);
+                text.append(separators[random.nextInt(separators.length)]);
+            }
+            if (random.nextBoolean()) {
+                text.append(tokens[random.nextInt(tokens.length)]);
+            }
+            List<String> expected = tokenizer.tokenize(text);
+            assertEquals(text.toString(), expected, tokenize(tokenizer,
+                    text.toString(), 16));
+            // chunk boundaries anywhere
+            List<String> trickled = new ArrayList<String>();
+            assertTrue(tokenizer.tokenize(new TrickleReader(text.toString(),
+                    random), 16, trickled::add));
+            assertEquals(text.toString(), expected, trickled);
+        }
+    }
+
+    @Test
+    public void readerKeepsTokensAsLongAsChunk() throws IOException {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setQuote('"');
+        assertEquals(Arrays.asList("0123456789abcdef", "y"), tokenize(
+                tokenizer, "0123456789abcdef,y", 16));
+        assertEquals(Arrays.asList("0123456789abcdef"), tokenize(tokenizer,
+                "0123456789abcdef", 16));
+        assertEquals(Arrays.asList("0123456789abcd", "y"), tokenize(
+                tokenizer, "\"0123456789abcd\",y", 16));
+        assertEquals(Arrays.asList("x", "y"), tokenize(tokenizer,
+                "x,0123456789abcdefg,y", 16));
+    }
+
+    @Test
+    public void readerSkipsQuotedTokenEndingAtChunkEnd() throws IOException {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setQuote('"');
+        tokenizer.setEscape('\\');
+        // the closing quote is the last character of the first chunk
+        assertEquals(Arrays.asList("b", "c"), tokenize(tokenizer,
+                "\"0123456789abcde\"zz, b, c", 16));
+        // so is an escape
+        assertEquals(Arrays.asList("b"), tokenize(tokenizer,
+                "0123456789abcdef\\,zz, b", 16));
+    }
+
+    @Test
+    public void readerReportsSkippedTokens() throws IOException {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setMaxTokenLength(4);
+        List<String> tokens = new ArrayList<String>();
+        int[] skipped = new int[1];
+        tokenizer.tokenize(new StringReader(
+                "a, abcde, 0123456789abcdefghij, b"), 16, tokens::add,
+                () -> skipped[0]++);
+        assertEquals(Arrays.asList("a", "b"), tokens);
+        assertEquals(2, skipped[0]);
+    }
+
+    @Test
+    public void readerSkipsTokensLongerThanChunk() throws IOException {
+        Tokenizer tokenizer = new Tokenizer(",");
+        tokenizer.setQuote('"');
+        assertEquals(Arrays.asList("a", "b"), tokenize(tokenizer,
+                "a, 0123456789abcdefghij, b", 16));
+        assertEquals(Arrays.asList("a", "b"), tokenize(tokenizer,
+                "a, \"0123456789, abcdefghij\", b", 16));
+    }
+
+    @Test
+    public void readerConsumerCanStop() throws IOException {
+        Tokenizer tokenizer = new Tokenizer(",");
+        List<String> tokens = new ArrayList<String>();
+        boolean complete = tokenizer.tokenize(new StringReader("a,b,c,d"),
+                16, token -> tokens.add(token) && tokens.size() < 2);
+        assertFalse(complete);
+        assertEquals(Arrays.asList("a", "b"), tokens);
+    }
+
+    /*
+     * Returns a few characters at a time
+     */
+    private static final class TrickleReader extends StringReader {
+
+        private final Random random;
+
+        TrickleReader(String text, Random random) {
+            super(text);
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, 1 + random.nextInt(3)));
+        }
+    }
+
+    static List<String> tokenize(Tokenizer tokenizer, String text,
+            int chunkSize) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        assertTrue(tokenizer.tokenize(new StringReader(text), chunkSize,
+                tokens::add));
+        return tokens;
+    }
+}
@@ -0,0 +1,383 @@
+package org.vaadin.tokenfield;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TokenFieldMetrics} that sums up everything it is told in memory:
+ * counters, and a {@link Histogram} of the latency of each kind of operation.
+ * Safe for concurrent use, so one instance can be shared by all fields of an
+ * application and read periodically, e.g via {@link #toMap()}.
+ * <p>
+ * On deserialization the instance still alive in the JVM is used, so the
+ * fields of all sessions keep on adding to the same figures; in another JVM
+ * the first deserialized copy goes on with the figures it was serialized
+ * with, and the fields deserialized later share it.
+ * </p>
+ */
+public class AggregatingTokenFieldMetrics implements TokenFieldMetrics {
+
+    private static final long serialVersionUID = -2630946522565106385L;
+
+    /* the live instances by key, for deserialization */
+    private static final ConcurrentHashMap<String, InstanceReference> instances = new ConcurrentHashMap<String, InstanceReference>();
+
+    private static final ReferenceQueue<AggregatingTokenFieldMetrics> collected = new ReferenceQueue<AggregatingTokenFieldMetrics>();
+
+    private final String key = UUID.randomUUID().toString();
+
+    private final LongAdder tokensAdded = new LongAdder();
+    private final LongAdder tokensRemoved = new LongAdder();
+    private final LongAdder tokensAppliedAdded = new LongAdder();
+    private final LongAdder tokensAppliedRemoved = new LongAdder();
+    private final LongAdder suggestionResults = new LongAdder();
+    private final LongAdder deleteRequests = new LongAdder();
+    private final LongAdder tokensDeleteRequested = new LongAdder();
+    private final LongAdder newTokensSubmitted = new LongAdder();
+
+    private final Histogram addLatency = new Histogram();
+    private final Histogram removeLatency = new Histogram();
+    private final Histogram reconcileLatency = new Histogram();
+    private final Histogram valueLatency = new Histogram();
+    private final Histogram filterLatency = new Histogram();
+
+    /**
+     * Creates metrics with all figures at zero.
+     */
+    public AggregatingTokenFieldMetrics() {
+        register();
+    }
+
+    /*
+     * Returns the live instance with the same key, registering this one if
+     * there is none.
+     */
+    private AggregatingTokenFieldMetrics register() {
+        InstanceReference reference;
+        while ((reference = (InstanceReference) collected.poll()) != null) {
+            instances.remove(reference.key, reference);
+        }
+        while (true) {
+            reference = instances.get(key);
+            AggregatingTokenFieldMetrics instance = reference == null ? null
+                    : reference.get();
+            if (instance != null) {
+                return instance;
+            }
+            InstanceReference created = new InstanceReference(this);
+            if (reference == null ? instances.putIfAbsent(key, created) == null
+                    : instances.replace(key, reference, created)) {
+                return this;
+            }
+        }
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return register();
+    }
+
+    @Override
+    public void tokensAdded(int count, long nanos) {
+        tokensAdded.add(count);
+        addLatency.record(nanos);
+    }
+
+    @Override
+    public void tokensRemoved(int count, long nanos) {
+        tokensRemoved.add(count);
+        removeLatency.record(nanos);
+    }
+
+    @Override
+    public void reconciled(int tokenCount, long nanos) {
+        reconcileLatency.record(nanos);
+    }
+
+    @Override
+    public void valueApplied(int added, int removed, long nanos) {
+        tokensAppliedAdded.add(added);
+        tokensAppliedRemoved.add(removed);
+        valueLatency.record(nanos);
+    }
+
+    @Override
+    public void suggestionsFiltered(String filter, int resultCount,
+            long nanos) {
+        suggestionResults.add(resultCount);
+        filterLatency.record(nanos);
+    }
+
+    @Override
+    public void deleteRequested(int count) {
+        deleteRequests.increment();
+        tokensDeleteRequested.add(count);
+    }
+
+    @Override
+    public void newTokensSubmitted(int count) {
+        newTokensSubmitted.add(count);
+    }
+
+    /**
+     * @return the number of tokens added with addToken or addTokens
+     */
+    public long getTokensAdded() {
+        return tokensAdded.sum();
+    }
+
+    /**
+     * @return the number of tokens removed with removeToken or removeTokens
+     */
+    public long getTokensRemoved() {
+        return tokensRemoved.sum();
+    }
+
+    /**
+     * @return the number of tokens added by new values, however set
+     */
+    public long getTokensAppliedAdded() {
+        return tokensAppliedAdded.sum();
+    }
+
+    /**
+     * @return the number of tokens removed by new values, however set
+     */
+    public long getTokensAppliedRemoved() {
+        return tokensAppliedRemoved.sum();
+    }
+
+    /**
+     * @return the total number of suggestions found by all lookups
+     */
+    public long getSuggestionResults() {
+        return suggestionResults.sum();
+    }
+
+    /**
+     * @return the number of delete requests received from clients
+     */
+    public long getDeleteRequests() {
+        return deleteRequests.sum();
+    }
+
+    /**
+     * @return the number of tokens clients asked to delete
+     */
+    public long getTokensDeleteRequested() {
+        return tokensDeleteRequested.sum();
+    }
+
+    /**
+     * @return the number of new tokens submitted by users
+     */
+    public long getNewTokensSubmitted() {
+        return newTokensSubmitted.sum();
+    }
+
+    public Histogram getAddLatency() {
+        return addLatency;
+    }
+
+    public Histogram getRemoveLatency() {
+        return removeLatency;
+    }
+
+    public Histogram getReconcileLatency() {
+        return reconcileLatency;
+    }
+
+    public Histogram getValueLatency() {
+        return valueLatency;
+    }
+
+    public Histogram getFilterLatency() {
+        return filterLatency;
+    }
+
+    /**
+     * Gets all counters, and the count, mean, 50th, 99th percentile and max of
+     * each latency in microseconds, by name, e.g "tokens.added" and
+     * "latency.add.p99".
+     *
+     * @return the current figures, in a stable order
+     */
+    public Map<String, Number> toMap() {
+        Map<String, Number> map = new LinkedHashMap<String, Number>();
+        map.put("tokens.added", getTokensAdded());
+        map.put("tokens.removed", getTokensRemoved());
+        map.put("value.added", getTokensAppliedAdded());
+        map.put("value.removed", getTokensAppliedRemoved());
+        map.put("suggestions.results", getSuggestionResults());
+        map.put("delete.requests", getDeleteRequests());
+        map.put("delete.tokens", getTokensDeleteRequested());
+        map.put("tokens.submitted", getNewTokensSubmitted());
+        addLatency.putAll("latency.add", map);
+        removeLatency.putAll("latency.remove", map);
+        reconcileLatency.putAll("latency.reconcile", map);
+        valueLatency.putAll("latency.value", map);
+        filterLatency.putAll("latency.filter", map);
+        return map;
+    }
+
+    /**
+     * Resets all counters and histograms.
+     */
+    public void reset() {
+        tokensAdded.reset();
+        tokensRemoved.reset();
+        tokensAppliedAdded.reset();
+        tokensAppliedRemoved.reset();
+        suggestionResults.reset();
+        deleteRequests.reset();
+        tokensDeleteRequested.reset();
+        newTokensSubmitted.reset();
+        addLatency.reset();
+        removeLatency.reset();
+        reconcileLatency.reset();
+        valueLatency.reset();
+        filterLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private static final class InstanceReference extends
+            WeakReference<AggregatingTokenFieldMetrics> {
+
+        private final String key;
+
+        private InstanceReference(AggregatingTokenFieldMetrics instance) {
+            super(instance, collected);
+            key = instance.key;
+        }
+    }
+
+    /**
+     * A latency histogram with power-of-two microsecond buckets: bucket 0
+     * counts latencies below 1 microsecond, bucket n those from 2^(n-1) up to
+     * 2^n microseconds, and the last bucket everything longer. Percentiles are
+     * thus accurate to a factor of two.
+     */
+    public static class Histogram implements Serializable {
+
+        private static final long serialVersionUID = 5367101580683768417L;
+
+        /**
+         * The number of buckets; the last one starts at about 1 minute.
+         */
+        public static final int BUCKETS = 28;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Records one latency.
+         *
+         * @param nanos
+         *            the latency in nanoseconds
+         */
+        public void record(long nanos) {
+            long micros = Math.max(0, nanos) / 1000;
+            int bucket = micros == 0 ? 0
+                    : Math.min(BUCKETS - 1,
+                            64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the mean latency in the given unit, 0 if nothing was
+         *         recorded
+         */
+        public double getMean(TimeUnit unit) {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) totalNanos.sum() / n / unit.toNanos(1);
+        }
+
+        /**
+         * @return the longest latency in the given unit
+         */
+        public long getMax(TimeUnit unit) {
+            return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Gets an upper bound of the given percentile: the upper limit of the
+         * bucket it falls into.
+         *
+         * @param percentile
+         *            the percentile, from 0 to 100
+         * @return the percentile in microseconds, 0 if nothing was recorded
+         */
+        public long getPercentileMicros(double percentile) {
+            long total = 0;
+            long[] counts = getBucketCounts();
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKETS - 1);
+        }
+
+        /**
+         * @return a copy of the bucket counts
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return counts;
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+
+        private void putAll(String prefix, Map<String, Number> map) {
+            map.put(prefix + ".count", getCount());
+            map.put(prefix + ".mean", getMean(TimeUnit.MICROSECONDS));
+            map.put(prefix + ".p50", getPercentileMicros(50));
+            map.put(prefix + ".p99", getPercentileMicros(99));
+            map.put(prefix + ".max", getMax(TimeUnit.MICROSECONDS));
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package org.vaadin.tokenfield;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.vaadin.v7.shared.ui.combobox.FilteringMode;
+
+/**
+ * A {@link SuggestionProvider} that caches the suggestions of another
+ * provider, so that the filters users type over and over again are not
+ * re-evaluated every time.
+ * <p>
+ * Results are cached by filtering mode, filter (ignoring case) and page. The
+ * cache holds a limited number of results, evicting (about) the least
+ * recently used ones when it is full, and results older than the given time
+ * to live are fetched again. When a token is remembered through this
+ * provider, the cached results the token would match are dropped.
+ * </p>
+ * <p>
+ * The cache is safe for concurrent use, and lookups do not lock, so one
+ * instance can be shared by all fields using the same source, e.g a
+ * {@link SharedVocabulary}. The cached results are not serialized: on
+ * deserialization the instance still alive in the JVM is used, so sessions
+ * keep on sharing one cache; in another JVM the cache starts empty.
+ * </p>
+ */
+public class CachingSuggestionProvider implements SuggestionProvider {
+
+    private static final long serialVersionUID = -4318809006652297011L;
+
+    /**
+     * When the cache is full, it is shrunk to this share of maxEntries, so
+     * that the least recently used entries are not searched on every store
+     */
+    private static final float SHRINK_FACTOR = 0.875f;
+
+    /* the live instances by key, for deserialization */
+    private static final ConcurrentHashMap<String, InstanceReference> instances = new ConcurrentHashMap<String, InstanceReference>();
+
+    private static final ReferenceQueue<CachingSuggestionProvider> collected = new ReferenceQueue<CachingSuggestionProvider>();
+
+    private final String key = UUID.randomUUID().toString();
+
+    private final SuggestionProvider provider;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+
+    private transient Map<Key, Entry> entries;
+    private transient AtomicBoolean evicting;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache for the given provider.
+     *
+     * @param provider
+     *            the provider to cache
+     * @param maxEntries
+     *            how many results (pages and counts) are cached at most
+     * @param timeToLive
+     *            how long results are cached
+     * @param unit
+     *            the unit of timeToLive
+     */
+    public CachingSuggestionProvider(SuggestionProvider provider,
+            int maxEntries, long timeToLive, TimeUnit unit) {
+        if (provider == null) {
+            throw new IllegalArgumentException("provider can not be null");
+        }
+        this.provider = provider;
+        this.maxEntries = maxEntries;
+        timeToLiveNanos = unit.toNanos(timeToLive);
+        createEntries();
+        register();
+    }
+
+    private void createEntries() {
+        entries = new ConcurrentHashMap<Key, Entry>();
+        evicting = new AtomicBoolean();
+    }
+
+    /*
+     * Returns the live instance with the same key, registering this one if
+     * there is none.
+     */
+    private CachingSuggestionProvider register() {
+        InstanceReference reference;
+        while ((reference = (InstanceReference) collected.poll()) != null) {
+            instances.remove(reference.key, reference);
+        }
+        while (true) {
+            reference = instances.get(key);
+            CachingSuggestionProvider instance = reference == null ? null
+                    : reference.get();
+            if (instance != null) {
+                return instance;
+            }
+            InstanceReference created = new InstanceReference(this);
+            if (reference == null ? instances.putIfAbsent(key, created) == null
+                    : instances.replace(key, reference, created)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * @return the provider whose suggestions are cached
+     */
+    public SuggestionProvider getProvider() {
+        return provider;
+    }
+
+    @Override
+    public Stream<?> fetch(String filter, FilteringMode filteringMode,
+            int offset, int limit) {
+        Key key = new Key(filteringMode, filter, offset, limit);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return ((List<?>) cached).stream();
+        }
+        List<?> ids = provider.fetch(filter, filteringMode, offset, limit)
+                .collect(Collectors.toList());
+        store(key, ids);
+        return ids.stream();
+    }
+
+    @Override
+    public int count(String filter, FilteringMode filteringMode) {
+        Key key = new Key(filteringMode, filter, -1, -1);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (Integer) cached;
+        }
+        int count = provider.count(filter, filteringMode);
+        store(key, count);
+        return count;
+    }
+
+    @Override
+    public String getCaption(Object tokenId) {
+        return provider.getCaption(tokenId);
+    }
+
+    @Override
+    public boolean contains(Object tokenId) {
+        return provider.contains(tokenId);
+    }
+
+    @Override
+    public boolean rememberToken(Object tokenId, String caption) {
+        if (!provider.rememberToken(tokenId, caption)) {
+            return false;
+        }
+        String c = normalize(caption);
+        entries.keySet().removeIf(k -> k.matches(c));
+        return true;
+    }
+
+    /**
+     * Drops all cached results, e.g when the cached provider has changed.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of fetches and counts answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of fetches and counts passed on to the cached
+     *         provider
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of results currently cached, including expired ones
+     *         not yet evicted
+     */
+    public int getCachedCount() {
+        return entries.size();
+    }
+
+    private Object lookup(Key key) {
+        Entry entry = entries.get(key);
+        long now = System.nanoTime();
+        if (entry != null && now - entry.created > timeToLiveNanos) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        entry.lastUsed = now;
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    private void store(Key key, Object value) {
+        entries.put(key, new Entry(value, System.nanoTime()));
+        if (entries.size() > maxEntries && evicting.compareAndSet(false, true)) {
+            try {
+                evictLeastRecentlyUsed();
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    /*
+     * Only one thread at a time evicts, the others go on storing meanwhile.
+     */
+    private void evictLeastRecentlyUsed() {
+        List<Map.Entry<Key, Entry>> used = new ArrayList<Map.Entry<Key, Entry>>(
+                entries.entrySet());
+        int excess = used.size() - (int) (maxEntries * SHRINK_FACTOR);
+        if (excess <= 0) {
+            return;
+        }
+        used.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        for (Map.Entry<Key, Entry> e : used.subList(0, excess)) {
+            entries.remove(e.getKey(), e.getValue());
+        }
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        createEntries();
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return register();
+    }
+
+    private static final class InstanceReference extends
+            WeakReference<CachingSuggestionProvider> {
+
+        private final String key;
+
+        private InstanceReference(CachingSuggestionProvider instance) {
+            super(instance, collected);
+            key = instance.key;
+        }
+    }
+
+    private static final class Key {
+
+        private final FilteringMode filteringMode;
+        private final String filter;
+        private final int offset;
+        private final int limit;
+
+        private Key(FilteringMode filteringMode, String filter, int offset,
+                int limit) {
+            String f = normalize(filter);
+            if (filteringMode == null || f.isEmpty()) {
+                // everything matches
+                filteringMode = FilteringMode.OFF;
+            }
+            this.filteringMode = filteringMode;
+            this.filter = filteringMode == FilteringMode.OFF ? "" : f;
+            this.offset = offset;
+            this.limit = limit;
+        }
+
+        /*
+         * Whether a token with the given normalized caption would be among the
+         * results of this key
+         */
+        private boolean matches(String caption) {
+            switch (filteringMode) {
+            case STARTSWITH:
+                return caption.startsWith(filter);
+            case CONTAINS:
+                return caption.contains(filter);
+            default:
+                return true;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return ((filteringMode.hashCode() * 31 + filter.hashCode()) * 31 + offset)
+                    * 31 + limit;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return filteringMode == other.filteringMode
+                    && filter.equals(other.filter) && offset == other.offset
+                    && limit == other.limit;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final long created;
+        /* racy updates are fine, eviction is approximate anyway */
+        private volatile long lastUsed;
+
+        private Entry(Object value, long created) {
+            this.value = value;
+            this.created = created;
+            lastUsed = created;
+        }
+    }
+}
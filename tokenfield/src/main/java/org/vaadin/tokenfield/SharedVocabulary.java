@@ -0,0 +1,256 @@
+package org.vaadin.tokenfield;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.vaadin.tokenfield.model.Vocabulary;
+
+import com.vaadin.v7.shared.ui.combobox.FilteringMode;
+
+/**
+ * An application-wide suggestion vocabulary that any number of
+ * {@link TokenField}s, in any number of sessions, can use as their
+ * {@link SuggestionProvider} without copying it.
+ * <p>
+ * Vocabularies are looked up by name, see {@link #get(String)} and
+ * {@link #get(String, Supplier)}. The tokens are held in immutable
+ * {@link SuggestionIndex} snapshots: readers never lock, and a writer builds
+ * and publishes a new snapshot, so updates made from one session never block
+ * suggestions in another. Single additions go to a small delta index which is
+ * merged into the main index once it grows large enough.
+ * </p>
+ * <p>
+ * When a session is serialized only the name of the vocabulary is written; on
+ * deserialization the vocabulary registered under that name is used. In
+ * another JVM the vocabulary must be registered again (e.g with
+ * {@link #get(String, Supplier)}) before it is needed.
+ * </p>
+ */
+public final class SharedVocabulary implements SuggestionProvider,
+        Vocabulary {
+
+    private static final long serialVersionUID = -1850306296734651352L;
+
+    /**
+     * The delta index is merged into the main index when it has more tokens
+     * than this
+     */
+    private static final int MAX_DELTA_SIZE = 512;
+
+    private static final ConcurrentHashMap<String, SharedVocabulary> vocabularies = new ConcurrentHashMap<String, SharedVocabulary>();
+
+    private final String name;
+
+    private final Object writeLock = new Object();
+
+    private transient volatile Snapshot snapshot = new Snapshot(
+            new SuggestionIndex(), new SuggestionIndex());
+
+    private SharedVocabulary(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the vocabulary registered with the given name, registering an
+     * empty one if needed.
+     *
+     * @param name
+     *            the name of the vocabulary
+     * @return the shared vocabulary
+     */
+    public static SharedVocabulary get(String name) {
+        return vocabularies.computeIfAbsent(name, SharedVocabulary::new);
+    }
+
+    /**
+     * Gets the vocabulary registered with the given name. If there is none, a
+     * new one is registered and filled with the given tokens; the tokens are
+     * loaded only once, even if many sessions ask for the vocabulary at the
+     * same time.
+     *
+     * @param name
+     *            the name of the vocabulary
+     * @param tokenIds
+     *            loads the initial tokens, captioned by their string
+     *            representation
+     * @return the shared vocabulary
+     */
+    public static SharedVocabulary get(String name,
+            Supplier<? extends Collection<?>> tokenIds) {
+        return vocabularies.computeIfAbsent(name, n -> {
+            SharedVocabulary vocabulary = new SharedVocabulary(n);
+            vocabulary.addAll(tokenIds.get());
+            return vocabulary;
+        });
+    }
+
+    /**
+     * Unregisters the vocabulary with the given name. Fields using it keep on
+     * using it, but it is no longer found by name.
+     *
+     * @param name
+     *            the name of the vocabulary
+     */
+    public static void remove(String name) {
+        vocabularies.remove(name);
+    }
+
+    /**
+     * @return the name the vocabulary is registered with
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds a token to the vocabulary, unless it already is in it.
+     *
+     * @param tokenId
+     *            the token to add
+     * @param caption
+     *            the caption the token is suggested with and matched against
+     * @return true if the token was added
+     */
+    public boolean add(Object tokenId, String caption) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (current.contains(tokenId)) {
+                return false;
+            }
+            SuggestionIndex delta = new SuggestionIndex();
+            delta.addAll(current.delta);
+            delta.add(tokenId, caption);
+            if (delta.size() > MAX_DELTA_SIZE) {
+                SuggestionIndex base = new SuggestionIndex();
+                base.addAll(current.base);
+                base.addAll(delta);
+                snapshot = new Snapshot(base, new SuggestionIndex());
+            } else {
+                snapshot = new Snapshot(current.base, delta);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Adds the given tokens, captioned by their string representation, to the
+     * vocabulary. They are published at once, as a single update.
+     *
+     * @param tokenIds
+     *            the tokens to add
+     */
+    public void addAll(Collection<?> tokenIds) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            SuggestionIndex base = new SuggestionIndex();
+            base.addAll(current.base);
+            base.addAll(current.delta);
+            for (Object tokenId : tokenIds) {
+                base.add(tokenId, String.valueOf(tokenId));
+            }
+            snapshot = new Snapshot(base, new SuggestionIndex());
+        }
+    }
+
+    /**
+     * @return the number of tokens in the vocabulary
+     */
+    public int size() {
+        Snapshot current = snapshot;
+        return current.base.size() + current.delta.size();
+    }
+
+    /**
+     * @param tokenId
+     *            a token
+     * @return true if the token is in the vocabulary
+     */
+    public boolean contains(Object tokenId) {
+        return snapshot.contains(tokenId);
+    }
+
+    @Override
+    public Stream<?> fetch(String filter, FilteringMode filteringMode,
+            int offset, int limit) {
+        Snapshot current = snapshot;
+        if (current.delta.size() == 0) {
+            return current.base.fetch(filter, filteringMode, offset, limit);
+        }
+        // matches in the main index come first, then those in the delta
+        List<?> result = current.base
+                .fetch(filter, filteringMode, offset, limit)
+                .collect(Collectors.toList());
+        if (result.size() >= limit) {
+            return result.stream();
+        }
+        int baseCount = result.isEmpty() ? current.base.count(filter,
+                filteringMode) : offset + result.size();
+        return Stream.concat(result.stream(), current.delta.fetch(filter,
+                filteringMode, Math.max(0, offset - baseCount),
+                limit - result.size()));
+    }
+
+    @Override
+    public int count(String filter, FilteringMode filteringMode) {
+        Snapshot current = snapshot;
+        return current.base.count(filter, filteringMode)
+                + current.delta.count(filter, filteringMode);
+    }
+
+    @Override
+    public String getCaption(Object tokenId) {
+        Snapshot current = snapshot;
+        if (current.delta.contains(tokenId)) {
+            return current.delta.getCaption(tokenId);
+        }
+        return current.base.getCaption(tokenId);
+    }
+
+    @Override
+    public boolean rememberToken(Object tokenId, String caption) {
+        return add(tokenId, caption);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedForm(name);
+    }
+
+    /*
+     * Immutable once published
+     */
+    private static final class Snapshot {
+
+        private final SuggestionIndex base;
+        private final SuggestionIndex delta;
+
+        private Snapshot(SuggestionIndex base, SuggestionIndex delta) {
+            this.base = base;
+            this.delta = delta;
+        }
+
+        private boolean contains(Object tokenId) {
+            return base.contains(tokenId) || delta.contains(tokenId);
+        }
+    }
+
+    private static final class SerializedForm implements Serializable {
+
+        private static final long serialVersionUID = 4581960367018307462L;
+
+        private final String name;
+
+        private SerializedForm(String name) {
+            this.name = name;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return get(name);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package org.vaadin.tokenfield;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.vaadin.v7.data.Container;
+import com.vaadin.v7.data.Item;
+import com.vaadin.v7.data.Property;
+import com.vaadin.v7.data.util.ObjectProperty;
+import com.vaadin.v7.data.util.PropertysetItem;
+import com.vaadin.v7.data.util.filter.SimpleStringFilter;
+import com.vaadin.v7.data.util.filter.UnsupportedFilterException;
+import com.vaadin.v7.shared.ui.combobox.FilteringMode;
+
+/**
+ * Read-only container that adapts a {@link SuggestionProvider} for the input
+ * ComboBox. The ComboBox pages through filterable, indexed containers by
+ * adding its filter, asking for the size and then for the ids of the current
+ * page only; this container turns those calls into provider queries.
+ * <p>
+ * Whether the container holds an id is asked from the provider. The ids of
+ * the most recently fetched page are kept too, so that the ComboBox resolves
+ * the suggestion the user selects even if the provider does not implement
+ * {@link SuggestionProvider#contains(Object)}. {@link #getItemIds()} pages
+ * through the provider as it is iterated, instead of loading every id; its
+ * contains method searches no more than
+ * {@link SuggestionProvider#COUNT_ESTIMATE_LIMIT} ids.
+ * </p>
+ */
+class SuggestionContainer implements Container.Indexed, Container.Filterable {
+
+    private static final long serialVersionUID = -3254187960934180231L;
+
+    /**
+     * The only property of the items; holds the caption.
+     */
+    static final Object CAPTION_PROPERTY_ID = "caption";
+
+    /**
+     * How many ids {@link #getItemIds()} fetches at a time
+     */
+    static final int ITERATION_PAGE_LENGTH = 256;
+
+    private final SuggestionProvider provider;
+
+    private SimpleStringFilter filter;
+
+    private String countedFilter;
+    private FilteringMode countedFilteringMode;
+    private int count;
+
+    /* the ids of the page fetched last */
+    private Set<Object> pageIds = Collections.emptySet();
+
+    SuggestionContainer(SuggestionProvider provider) {
+        this.provider = provider;
+    }
+
+    SuggestionProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Forgets cached counts, e.g when tokens have been added to the provider.
+     */
+    void refresh() {
+        countedFilter = null;
+    }
+
+    private String getFilterString() {
+        return filter == null ? "" : filter.getFilterString();
+    }
+
+    private FilteringMode getFilteringMode() {
+        if (filter == null) {
+            return FilteringMode.OFF;
+        }
+        return filter.isOnlyMatchPrefix() ? FilteringMode.STARTSWITH
+                : FilteringMode.CONTAINS;
+    }
+
+    @Override
+    public int size() {
+        String filterString = getFilterString();
+        FilteringMode filteringMode = getFilteringMode();
+        if (filterString.equals(countedFilter)
+                && filteringMode == countedFilteringMode) {
+            return count;
+        }
+        count = provider.count(filterString, filteringMode);
+        if (count < 0) {
+            count = (int) provider.fetch(filterString, filteringMode, 0,
+                    SuggestionProvider.COUNT_ESTIMATE_LIMIT).count();
+        }
+        countedFilter = filterString;
+        countedFilteringMode = filteringMode;
+        return count;
+    }
+
+    @Override
+    public List<?> getItemIds(int startIndex, int numberOfItems) {
+        List<?> ids = provider.fetch(getFilterString(), getFilteringMode(),
+                startIndex, numberOfItems).collect(Collectors.toList());
+        pageIds = new LinkedHashSet<Object>(ids);
+        return ids;
+    }
+
+    @Override
+    public Collection<?> getItemIds() {
+        return new PagedIds(getFilterString(), getFilteringMode());
+    }
+
+    @Override
+    public boolean containsId(Object itemId) {
+        return pageIds.contains(itemId) || provider.contains(itemId);
+    }
+
+    @Override
+    public Item getItem(Object itemId) {
+        if (!containsId(itemId)) {
+            return null;
+        }
+        PropertysetItem item = new PropertysetItem();
+        item.addItemProperty(CAPTION_PROPERTY_ID, new ObjectProperty<String>(
+                provider.getCaption(itemId), String.class, true));
+        return item;
+    }
+
+    @Override
+    public Property getContainerProperty(Object itemId, Object propertyId) {
+        Item item = getItem(itemId);
+        return item == null ? null : item.getItemProperty(propertyId);
+    }
+
+    @Override
+    public Collection<?> getContainerPropertyIds() {
+        return Collections.singleton(CAPTION_PROPERTY_ID);
+    }
+
+    @Override
+    public Class<?> getType(Object propertyId) {
+        return CAPTION_PROPERTY_ID.equals(propertyId) ? String.class : null;
+    }
+
+    @Override
+    public void addContainerFilter(Filter filter)
+            throws UnsupportedFilterException {
+        if (!(filter instanceof SimpleStringFilter)) {
+            throw new UnsupportedFilterException(
+                    "Only the ComboBox filter is supported");
+        }
+        this.filter = (SimpleStringFilter) filter;
+    }
+
+    @Override
+    public void removeContainerFilter(Filter filter) {
+        if (filter != null && filter.equals(this.filter)) {
+            this.filter = null;
+        }
+    }
+
+    @Override
+    public void removeAllContainerFilters() {
+        filter = null;
+    }
+
+    @Override
+    public Collection<Filter> getContainerFilters() {
+        if (filter == null) {
+            return Collections.emptyList();
+        }
+        return Collections.<Filter> singletonList(filter);
+    }
+
+    @Override
+    public int indexOfId(Object itemId) {
+        return -1;
+    }
+
+    @Override
+    public Object getIdByIndex(int index) {
+        return provider.fetch(getFilterString(), getFilteringMode(), index, 1)
+                .findFirst().orElse(null);
+    }
+
+    @Override
+    public Object firstItemId() {
+        return getIdByIndex(0);
+    }
+
+    @Override
+    public Object lastItemId() {
+        int size = size();
+        return size == 0 ? null : getIdByIndex(size - 1);
+    }
+
+    @Override
+    public boolean isFirstId(Object itemId) {
+        return itemId != null && itemId.equals(firstItemId());
+    }
+
+    @Override
+    public boolean isLastId(Object itemId) {
+        return itemId != null && itemId.equals(lastItemId());
+    }
+
+    @Override
+    public Object nextItemId(Object itemId) {
+        return null;
+    }
+
+    @Override
+    public Object prevItemId(Object itemId) {
+        return null;
+    }
+
+    @Override
+    public Item addItem(Object itemId) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItem() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAfter(Object previousItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAfter(Object previousItemId, Object newItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAt(int index) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAt(int index, Object newItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeItem(Object itemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAllItems() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addContainerProperty(Object propertyId, Class<?> type,
+            Object defaultValue) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeContainerProperty(Object propertyId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    /*
+     * The ids matching a filter, fetched page by page while iterating
+     */
+    private final class PagedIds extends AbstractCollection<Object> {
+
+        private final String filterString;
+        private final FilteringMode filteringMode;
+
+        private PagedIds(String filterString, FilteringMode filteringMode) {
+            this.filterString = filterString;
+            this.filteringMode = filteringMode;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new Iterator<Object>() {
+
+                private List<?> page = Collections.emptyList();
+                private int index;
+                /* the offset of the next page */
+                private int offset;
+                private boolean lastPage;
+
+                @Override
+                public boolean hasNext() {
+                    if (index == page.size() && !lastPage) {
+                        page = provider.fetch(filterString, filteringMode,
+                                offset, ITERATION_PAGE_LENGTH).collect(
+                                Collectors.toList());
+                        index = 0;
+                        offset += page.size();
+                        lastPage = page.size() < ITERATION_PAGE_LENGTH;
+                    }
+                    return index < page.size();
+                }
+
+                @Override
+                public Object next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return page.get(index++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int count = provider.count(filterString, filteringMode);
+            if (count >= 0) {
+                return count;
+            }
+            count = 0;
+            for (Iterator<Object> it = iterator(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        /*
+         * Asks the provider first; if it does not know the id, only the first
+         * COUNT_ESTIMATE_LIMIT matches are searched, instead of all of them.
+         */
+        @Override
+        public boolean contains(Object o) {
+            if (filteringMode == FilteringMode.OFF && provider.contains(o)) {
+                return true;
+            }
+            return provider.fetch(filterString, filteringMode, 0,
+                    SuggestionProvider.COUNT_ESTIMATE_LIMIT).anyMatch(
+                    id -> Objects.equals(id, o));
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package org.vaadin.tokenfield;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import org.vaadin.tokenfield.model.Vocabulary;
+
+import com.vaadin.v7.shared.ui.combobox.FilteringMode;
+
+/**
+ * An in-memory {@link SuggestionProvider} that indexes the token captions, so
+ * that suggestions are found without scanning every token on each keystroke.
+ * <ul>
+ * <li>{@link FilteringMode#STARTSWITH} uses a prefix trie; matches are
+ * suggested in alphabetical order, and counting them costs only a walk down
+ * the prefix.</li>
+ * <li>{@link FilteringMode#CONTAINS} uses an index of every substring of one
+ * to three characters; matches are suggested in the order they were added.
+ * The matches of filters up to three characters long are read directly from
+ * the index, and so is their count; for longer filters only tokens having
+ * every trigram of the filter are examined.</li>
+ * </ul>
+ * Matching ignores case. New tokens can be added at any time with
+ * {@link #add(Object, String)}; tokens remembered by a {@link TokenField} using
+ * this index are added automatically.
+ * <p>
+ * The index is also a {@link Vocabulary}, so headless
+ * {@link org.vaadin.tokenfield.model.TokenModel}s can accept tokens from it.
+ * The index is not safe for concurrent modification; to share one between
+ * sessions, see {@link SharedVocabulary}.
+ * </p>
+ */
+public class SuggestionIndex implements SuggestionProvider, Vocabulary {
+
+    private static final long serialVersionUID = -2390813342105447032L;
+
+    /* substrings up to this long are indexed */
+    private static final int GRAM = 3;
+
+    private final List<Object> ids = new ArrayList<Object>();
+    private final List<String> captions = new ArrayList<String>();
+    private final List<String> keys = new ArrayList<String>();
+    private final HashMap<Object, Integer> positions = new HashMap<Object, Integer>();
+
+    private final TrieNode root = new TrieNode();
+    /* the entries having each substring of 1 to GRAM characters */
+    private final HashMap<String, IntList> grams = new HashMap<String, IntList>();
+
+    /**
+     * Creates an empty index.
+     */
+    public SuggestionIndex() {
+    }
+
+    /**
+     * Creates an index of the given tokens, captioned by their string
+     * representation.
+     *
+     * @param tokenIds
+     *            the tokens to index
+     */
+    public SuggestionIndex(Collection<?> tokenIds) {
+        for (Object tokenId : tokenIds) {
+            add(tokenId, String.valueOf(tokenId));
+        }
+    }
+
+    /**
+     * Adds a token to the index, unless it is already indexed.
+     *
+     * @param tokenId
+     *            the token to add
+     * @param caption
+     *            the caption the token is suggested with and matched against
+     * @return true if the token was added
+     */
+    public boolean add(Object tokenId, String caption) {
+        if (positions.containsKey(tokenId)) {
+            return false;
+        }
+        int entry = ids.size();
+        String key = normalize(caption);
+        ids.add(tokenId);
+        captions.add(caption);
+        keys.add(key);
+        positions.put(tokenId, entry);
+
+        TrieNode node = root;
+        node.count++;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrAddChild(key.charAt(i));
+            node.count++;
+        }
+        node.addEntry(entry);
+
+        for (int length = 1; length <= GRAM; length++) {
+            for (int i = 0; i + length <= key.length(); i++) {
+                String gram = key.substring(i, i + length);
+                IntList postings = grams.get(gram);
+                if (postings == null) {
+                    postings = new IntList();
+                    grams.put(gram, postings);
+                }
+                if (postings.size == 0
+                        || postings.get(postings.size - 1) != entry) {
+                    postings.add(entry);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all tokens of another index, in the order they were added to it.
+     * 
+     * @param other
+     *            the index to copy tokens from
+     */
+    void addAll(SuggestionIndex other) {
+        for (int i = 0; i < other.ids.size(); i++) {
+            add(other.ids.get(i), other.captions.get(i));
+        }
+    }
+
+    /**
+     * @return the number of indexed tokens
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * @param tokenId
+     *            a token
+     * @return true if the token is indexed
+     */
+    public boolean contains(Object tokenId) {
+        return positions.containsKey(tokenId);
+    }
+
+    @Override
+    public Stream<?> fetch(String filter, FilteringMode filteringMode,
+            int offset, int limit) {
+        List<Object> result = new ArrayList<Object>(Math.min(limit, 64));
+        String f = normalize(filter);
+        if (limit <= 0) {
+            return result.stream();
+        }
+        if (f.isEmpty() || filteringMode == null
+                || filteringMode == FilteringMode.OFF) {
+            int end = (int) Math.min((long) offset + limit, ids.size());
+            if (offset < end) {
+                result.addAll(ids.subList(offset, end));
+            }
+        } else if (filteringMode == FilteringMode.STARTSWITH) {
+            TrieNode node = root.find(f);
+            if (node != null) {
+                node.collect(new int[] { offset }, limit, result);
+            }
+        } else {
+            collectContaining(f, offset, limit, result);
+        }
+        return result.stream();
+    }
+
+    @Override
+    public int count(String filter, FilteringMode filteringMode) {
+        String f = normalize(filter);
+        if (f.isEmpty() || filteringMode == null
+                || filteringMode == FilteringMode.OFF) {
+            return ids.size();
+        } else if (filteringMode == FilteringMode.STARTSWITH) {
+            TrieNode node = root.find(f);
+            return node == null ? 0 : node.count;
+        } else if (f.length() <= GRAM) {
+            IntList postings = grams.get(f);
+            return postings == null ? 0 : postings.size;
+        }
+        List<Object> all = new ArrayList<Object>();
+        collectContaining(f, 0, Integer.MAX_VALUE, all);
+        return all.size();
+    }
+
+    @Override
+    public String getCaption(Object tokenId) {
+        Integer entry = positions.get(tokenId);
+        return entry == null ? String.valueOf(tokenId) : captions.get(entry);
+    }
+
+    @Override
+    public boolean rememberToken(Object tokenId, String caption) {
+        return add(tokenId, caption);
+    }
+
+    private void collectContaining(String f, int offset, int limit,
+            List<Object> result) {
+        if (f.length() <= GRAM) {
+            // every entry having the substring matches
+            IntList postings = grams.get(f);
+            if (postings != null) {
+                long end = Math.min((long) offset + limit, postings.size);
+                for (int i = offset; i < end; i++) {
+                    result.add(ids.get(postings.get(i)));
+                }
+            }
+            return;
+        }
+        // the shortest posting list drives, the others are probed
+        int count = f.length() - GRAM + 1;
+        IntList[] lists = new IntList[count];
+        for (int i = 0; i < count; i++) {
+            lists[i] = grams.get(f.substring(i, i + GRAM));
+            if (lists[i] == null) {
+                return;
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        IntList driver = lists[0];
+        for (int i = 0; i < driver.size && result.size() < limit; i++) {
+            int e = driver.get(i);
+            boolean candidate = true;
+            for (int l = 1; l < lists.length && candidate; l++) {
+                candidate = lists[l].contains(e);
+            }
+            // having all trigrams does not mean they are consecutive
+            if (candidate && keys.get(e).contains(f)) {
+                if (offset > 0) {
+                    offset--;
+                } else {
+                    result.add(ids.get(e));
+                }
+            }
+        }
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    /*
+     * Trie node; children are kept sorted by character so that matches are
+     * collected in alphabetical order.
+     */
+    private final class TrieNode implements Serializable {
+
+        private static final long serialVersionUID = -6425311460744342098L;
+
+        private char[] labels = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        private int[] entries;
+        private int entryCount;
+        /* the number of entries in this subtree */
+        private int count;
+
+        private TrieNode find(String key) {
+            TrieNode node = this;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                int at = Arrays.binarySearch(node.labels, key.charAt(i));
+                node = at < 0 ? null : node.children[at];
+            }
+            return node;
+        }
+
+        private TrieNode getOrAddChild(char c) {
+            int at = Arrays.binarySearch(labels, c);
+            if (at >= 0) {
+                return children[at];
+            }
+            at = -at - 1;
+            char[] newLabels = new char[labels.length + 1];
+            TrieNode[] newChildren = new TrieNode[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1,
+                    children.length - at);
+            TrieNode child = new TrieNode();
+            newLabels[at] = c;
+            newChildren[at] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        private void addEntry(int entry) {
+            if (entries == null) {
+                entries = new int[1];
+            } else if (entryCount == entries.length) {
+                entries = Arrays.copyOf(entries, entryCount * 2);
+            }
+            entries[entryCount++] = entry;
+        }
+
+        /*
+         * Collects entries in order, skipping whole subtrees while the offset
+         * (skip[0]) is larger than them.
+         */
+        private void collect(int[] skip, int limit, List<Object> result) {
+            if (skip[0] >= count) {
+                skip[0] -= count;
+                return;
+            }
+            for (int i = 0; i < entryCount && result.size() < limit; i++) {
+                if (skip[0] > 0) {
+                    skip[0]--;
+                } else {
+                    result.add(ids.get(entries[i]));
+                }
+            }
+            for (int i = 0; i < children.length && result.size() < limit; i++) {
+                children[i].collect(skip, limit, result);
+            }
+        }
+    }
+
+    /*
+     * Growable, sorted list of entry numbers
+     */
+    private static final class IntList implements Serializable {
+
+        private static final long serialVersionUID = 2287135106437938560L;
+
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int get(int index) {
+            return values[index];
+        }
+
+        private boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+    }
+}
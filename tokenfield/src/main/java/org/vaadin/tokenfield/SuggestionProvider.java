@@ -0,0 +1,116 @@
+package org.vaadin.tokenfield;
+
+import java.io.Serializable;
+import java.util.stream.Stream;
+
+import com.vaadin.v7.shared.ui.combobox.FilteringMode;
+
+/**
+ * A source of token suggestions that is queried lazily, one page at a time,
+ * as the user types and pages through the suggestion popup. Use instead of a
+ * container when the vocabulary is large or lives elsewhere (e.g in a
+ * database), so that no per-session copy of it is needed.
+ * <p>
+ * Only {@link #fetch(String, FilteringMode, int, int)} must be implemented, so
+ * a lambda can be used.
+ * </p>
+ * 
+ * @see TokenField#setSuggestionProvider(SuggestionProvider)
+ */
+@FunctionalInterface
+public interface SuggestionProvider extends Serializable {
+
+    /**
+     * Returned by {@link #count(String, FilteringMode)} when the number of
+     * matches is not known.
+     */
+    public static final int UNKNOWN_COUNT = -1;
+
+    /**
+     * How many matches are counted at most when
+     * {@link #count(String, FilteringMode)} is {@link #UNKNOWN_COUNT}, and
+     * how many are searched for a token when {@link #contains(Object)} does
+     * not know it.
+     */
+    public static final int COUNT_ESTIMATE_LIMIT = 1000;
+
+    /**
+     * Fetches a page of tokenIds matching the filter.
+     * 
+     * @param filter
+     *            the lower case filter string the user has typed, empty for
+     *            none
+     * @param filteringMode
+     *            how the filter should be matched against the token captions;
+     *            {@link FilteringMode#OFF} means all tokens match
+     * @param offset
+     *            the index of the first match to return
+     * @param limit
+     *            the maximum number of matches to return
+     * @return the matching tokenIds, in the order they should be suggested
+     */
+    public Stream<?> fetch(String filter, FilteringMode filteringMode,
+            int offset, int limit);
+
+    /**
+     * Counts the tokens matching the filter. Defaults to
+     * {@link #UNKNOWN_COUNT}, in which case the matches are counted by
+     * fetching up to {@link #COUNT_ESTIMATE_LIMIT} of them; the suggestion
+     * popup then offers no more matches than that.
+     * 
+     * @param filter
+     *            the lower case filter string, empty for none
+     * @param filteringMode
+     *            the filtering mode
+     * @return the number of matches, or {@link #UNKNOWN_COUNT}
+     */
+    public default int count(String filter, FilteringMode filteringMode) {
+        return UNKNOWN_COUNT;
+    }
+
+    /**
+     * Gets the caption of a token, whether it is being suggested or already
+     * selected; {@link TokenField} captions its tokens with it. Defaults to
+     * the string representation of the tokenId.
+     * 
+     * @param tokenId
+     *            a tokenId, e.g one returned by
+     *            {@link #fetch(String, FilteringMode, int, int)}
+     * @return the caption
+     */
+    public default String getCaption(Object tokenId) {
+        return String.valueOf(tokenId);
+    }
+
+    /**
+     * Tells whether a token is among the suggestions, regardless of any
+     * filter. {@link TokenField} treats tokens the provider does not contain
+     * as new ones, e.g to remember them. Defaults to false, i.e every token
+     * entered by the user is new, and other lookups of a token only search
+     * the page fetched last or the first {@link #COUNT_ESTIMATE_LIMIT}
+     * suggestions; implement it if the provider can tell.
+     * 
+     * @param tokenId
+     *            a tokenId
+     * @return true if the token can be suggested
+     */
+    public default boolean contains(Object tokenId) {
+        return false;
+    }
+
+    /**
+     * Called when a {@link TokenField} remembers a new token entered by the
+     * user (see {@link TokenField#setRememberNewTokens(boolean)}), so that it
+     * can be suggested later. Defaults to doing nothing, i.e a read-only
+     * provider.
+     * 
+     * @param tokenId
+     *            the new token
+     * @param caption
+     *            the caption of the new token
+     * @return true if the token was added to the suggestions
+     */
+    public default boolean rememberToken(Object tokenId, String caption) {
+        return false;
+    }
+}
@@ -0,0 +1,132 @@
+package org.vaadin.tokenfield;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.vaadin.ui.renderers.AbstractRenderer;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonValue;
+
+/**
+ * A Grid renderer that shows a set of tokens as chips, looking like the
+ * tokens of a {@link TokenField}, without any component per token or cell.
+ * <p>
+ * The column value can be a collection or an array of tokens, or a string of
+ * tokens separated by {@link #setSeparator(String)}. Captions and styles come
+ * from a {@link TokenPresenter}; icons are not shown. Each cell is sent as a
+ * compact array of captions.
+ * </p>
+ *
+ * <pre>
+ * grid.addColumn(Article::getTags, new TokenChipRenderer&lt;Article&gt;());
+ * </pre>
+ *
+ * @param <T>
+ *            the type of the Grid rows
+ */
+public class TokenChipRenderer<T> extends AbstractRenderer<T, Object> {
+
+    private static final long serialVersionUID = -5281893409219538613L;
+
+    private final TokenPresenter presenter;
+
+    private String separator = ",";
+    private transient Pattern separatorPattern;
+
+    /**
+     * Creates a renderer that presents tokens by their string representation.
+     */
+    public TokenChipRenderer() {
+        this(TokenPresenter.DEFAULT);
+    }
+
+    /**
+     * Creates a renderer that presents tokens with the given presenter, e.g
+     * the one used by the {@link TokenField}s editing the same tokens.
+     *
+     * @param presenter
+     *            the presenter to use
+     */
+    public TokenChipRenderer(TokenPresenter presenter) {
+        super(Object.class, null);
+        if (presenter == null) {
+            throw new IllegalArgumentException("presenter can not be null");
+        }
+        this.presenter = presenter;
+    }
+
+    /**
+     * Sets the separator of tokens in string column values; the tokens are
+     * trimmed, and empty ones are left out.
+     *
+     * @param separator
+     *            the separator, "," by default
+     */
+    public void setSeparator(String separator) {
+        if (separator == null || separator.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "separator can not be null or empty");
+        }
+        this.separator = separator;
+        separatorPattern = null;
+    }
+
+    public String getSeparator() {
+        return separator;
+    }
+
+    public TokenPresenter getPresenter() {
+        return presenter;
+    }
+
+    /**
+     * Encodes the tokens as an array with the caption of each chip, or a
+     * [caption, style] array for chips with a style.
+     */
+    @Override
+    public JsonValue encode(Object value) {
+        JsonArray chips = Json.createArray();
+        int i = 0;
+        for (Object tokenId : getTokens(value)) {
+            String caption = presenter.getCaption(tokenId);
+            String style = presenter.getStyleName(tokenId);
+            if (style == null) {
+                chips.set(i++, caption);
+            } else {
+                JsonArray chip = Json.createArray();
+                chip.set(0, caption);
+                chip.set(1, style);
+                chips.set(i++, chip);
+            }
+        }
+        return chips;
+    }
+
+    private Collection<?> getTokens(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        } else if (value instanceof Collection) {
+            return (Collection<?>) value;
+        } else if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        } else if (value instanceof CharSequence) {
+            if (separatorPattern == null) {
+                separatorPattern = Pattern.compile("\\s*"
+                        + Pattern.quote(separator) + "\\s*");
+            }
+            String tokens = value.toString().trim();
+            if (tokens.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Arrays.stream(separatorPattern.split(tokens))
+                    .filter(token -> !token.isEmpty())
+                    .collect(Collectors.toList());
+        }
+        return Collections.singletonList(value);
+    }
+}
@@ -0,0 +1,238 @@
+package org.vaadin.tokenfield;
+
+import java.util.List;
+
+import org.vaadin.tokenfield.client.ui.TokenFieldServerRpc;
+import org.vaadin.tokenfield.client.ui.TokenFieldState;
+
+import com.vaadin.server.PaintException;
+import com.vaadin.server.PaintTarget;
+import com.vaadin.v7.ui.ComboBox;
+
+public abstract class TokenComboBox extends ComboBox {
+
+    private static final long serialVersionUID = 8382983756053298383L;
+
+    protected TokenField.InsertPosition insertPosition;
+
+    protected int filterDelay = 0;
+
+    protected int minFilterLength = 0;
+
+    protected String pasteSeparators;
+
+    protected boolean pasteUnsplit;
+
+    /**
+     * null when no metrics are collected
+     */
+    private TokenFieldMetrics metrics;
+
+    private TokenFieldServerRpc rpc = new TokenFieldServerRpc() {
+        public void deleteToken() {
+            deleteTokens(1);
+        }
+
+        public void deleteTokens(int count) {
+            if (metrics != null) {
+                metrics.deleteRequested(count);
+            }
+            onDelete(count);
+            // the client shows the tokens it hid again when it gets a response
+            markAsDirty();
+        }
+
+        public void tokenClick(String key) {
+            onTokenChipClick(key);
+        }
+
+        public void addTokens(String[] tokens) {
+            onTokensPaste(tokens);
+        }
+    };
+
+    public TokenComboBox(TokenField.InsertPosition insertPosition) {
+        this.insertPosition = insertPosition;
+        registerRpc(rpc);
+    }
+
+    @Override
+    protected TokenFieldState getState() {
+        return (TokenFieldState) super.getState();
+    }
+
+    @Override
+    public void paintContent(PaintTarget target) throws PaintException {
+        super.paintContent(target);
+        target.addVariable(this, "del", false);
+        if (insertPosition == TokenField.InsertPosition.AFTER) {
+            target.addAttribute("after", true);
+        }
+        if (filterDelay > 0) {
+            target.addAttribute("filterdelay", filterDelay);
+        }
+        if (minFilterLength > 0) {
+            target.addAttribute("minfilterlength", minFilterLength);
+        }
+        if (pasteSeparators != null && !pasteSeparators.isEmpty()) {
+            target.addAttribute("pasteseparators", pasteSeparators);
+        }
+        if (pasteUnsplit) {
+            target.addAttribute("pasteunsplit", true);
+        }
+    }
+
+    @Override
+    protected List<?> getOptionsWithFilter(boolean needNullSelectOption) {
+        if (metrics == null) {
+            return super.getOptionsWithFilter(needNullSelectOption);
+        }
+        long start = System.nanoTime();
+        List<?> options = super.getOptionsWithFilter(needNullSelectOption);
+        if (options != null) {
+            // otherwise getFilteredOptions() is used
+            metrics.suggestionsFiltered(filterstring, options.size(),
+                    System.nanoTime() - start);
+        }
+        return options;
+    }
+
+    @Override
+    protected List<?> getFilteredOptions() {
+        if (metrics == null) {
+            return super.getFilteredOptions();
+        }
+        long start = System.nanoTime();
+        List<?> options = super.getFilteredOptions();
+        metrics.suggestionsFiltered(filterstring, options.size(),
+                System.nanoTime() - start);
+        return options;
+    }
+
+    /**
+     * Sets the metrics suggestion lookups and delete requests are reported
+     * to.
+     *
+     * @param metrics
+     *            the metrics, or null or {@link TokenFieldMetrics#NONE} for
+     *            none
+     */
+    public void setMetrics(TokenFieldMetrics metrics) {
+        this.metrics = metrics == TokenFieldMetrics.NONE ? null : metrics;
+    }
+
+    public TokenFieldMetrics getMetrics() {
+        return metrics == null ? TokenFieldMetrics.NONE : metrics;
+    }
+
+    public void setTokenInsertPosition(TokenField.InsertPosition insertPosition) {
+        this.insertPosition = insertPosition;
+        requestRepaint();
+    }
+
+    public void setFilterDelay(int filterDelay) {
+        this.filterDelay = filterDelay;
+        markAsDirty();
+    }
+
+    public int getFilterDelay() {
+        return filterDelay;
+    }
+
+    public void setMinFilterLength(int minFilterLength) {
+        this.minFilterLength = minFilterLength;
+        markAsDirty();
+    }
+
+    public int getMinFilterLength() {
+        return minFilterLength;
+    }
+
+    public void setPasteSeparators(String pasteSeparators) {
+        this.pasteSeparators = pasteSeparators;
+        markAsDirty();
+    }
+
+    public String getPasteSeparators() {
+        return pasteSeparators;
+    }
+
+    /**
+     * Sets whether pasted text is sent as is, to be split on the server,
+     * instead of being split into tokens by the client.
+     *
+     * @param pasteUnsplit
+     *            true to send pasted text unsplit
+     */
+    public void setPasteUnsplit(boolean pasteUnsplit) {
+        this.pasteUnsplit = pasteUnsplit;
+        markAsDirty();
+    }
+
+    public boolean isPasteUnsplit() {
+        return pasteUnsplit;
+    }
+
+    /**
+     * Sets the tokens rendered as chips next to the input, or null to render
+     * no chips.
+     *
+     * @param keys
+     *            the token keys sent back when a chip is clicked
+     * @param captions
+     *            the chip captions
+     * @param styles
+     *            additional chip style names, entries may be null; null if no
+     *            chip has a style
+     */
+    public void setTokenChips(String[] keys, String[] captions, String[] styles) {
+        getState().tokenKeys = keys;
+        getState().tokenCaptions = captions;
+        getState().tokenStyles = styles;
+    }
+
+    /**
+     * Called when the user deletes the last token from the empty input.
+     * 
+     * @deprecated override {@link #onDelete(int)}, which calls this once per
+     *             token by default
+     */
+    @Deprecated
+    protected void onDelete() {
+    }
+
+    /**
+     * Called when the user deletes tokens from the empty input, e.g by holding
+     * backspace; calls {@link #onDelete()} once per token by default.
+     * 
+     * @param count
+     *            how many tokens to delete, starting from the last one
+     */
+    protected void onDelete(int count) {
+        for (int i = 0; i < count; i++) {
+            onDelete();
+        }
+    }
+
+    /**
+     * Called when the user clicks a token chip; does nothing by default.
+     * 
+     * @param key
+     *            the key of the token, see
+     *            {@link #setTokenChips(String[], String[], String[])}
+     */
+    protected void onTokenChipClick(String key) {
+    }
+
+    /**
+     * Called when the user pastes tokens into the input; does nothing by
+     * default.
+     * 
+     * @param tokens
+     *            the pasted tokens, or the pasted text if
+     *            {@link #isPasteUnsplit()}
+     */
+    protected void onTokensPaste(String[] tokens) {
+    }
+
+}
@@ -0,0 +1,2609 @@
+package org.vaadin.tokenfield;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Reader;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.vaadin.tokenfield.client.ui.TokenChipMarkup;
+import org.vaadin.tokenfield.model.SharedTokenDocument;
+import org.vaadin.tokenfield.model.TokenDelta;
+import org.vaadin.tokenfield.model.TokenImport;
+import org.vaadin.tokenfield.model.TokenModel;
+import org.vaadin.tokenfield.model.TokenStage;
+import org.vaadin.tokenfield.model.Tokenizer;
+import org.vaadin.tokenfield.model.Vocabulary;
+
+import com.vaadin.v7.data.Container;
+import com.vaadin.v7.data.Property;
+import com.vaadin.server.Resource;
+import com.vaadin.shared.Registration;
+import com.vaadin.shared.ui.ContentMode;
+import com.vaadin.v7.shared.ui.combobox.FilteringMode;
+import com.vaadin.v7.ui.AbstractSelect.ItemCaptionMode;
+import com.vaadin.v7.ui.AbstractSelect.NewItemHandler;
+import com.vaadin.ui.AbstractOrderedLayout;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Button.ClickEvent;
+import com.vaadin.v7.ui.ComboBox;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.v7.ui.CustomField;
+import com.vaadin.v7.ui.HorizontalLayout;
+import com.vaadin.ui.Layout;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.themes.ValoTheme;
+import com.vaadin.util.ReflectTools;
+
+/**
+ * 
+ * A kind of multiselect ComboBox. When the user selects a token (or inputs a
+ * new token, TokenField defaults to allowing new tokens), the value is added as
+ * a clickable "token button" before or after the input box. Duplicate
+ * selections are not allowed.
+ * 
+ * <p>
+ * TokenField defaults to using CssLayout, but virtually any Layout can be used.
+ * </p>
+ * 
+ * <p>
+ * Can be customized in several ways by overriding certain methods. When the
+ * user select or enters a new token, the following happens:
+ * <ul>
+ * <li>If the token is new (not in the container) and new tokens are not allowed
+ * ( {@link #setNewTokensAllowed(boolean) }), nothing happens - otherwise</li>
+ * <li>{@link #onTokenInput(Object)} is called, by default it just calls</li>
+ * <li>{@link #addToken(Object)} which will eventually cause a call to</li>
+ * <li>{@link #configureTokenButton(Object, Button)}</li>
+ * <li>finally, if the token is new, it's added to the container if
+ * {@link #setRememberNewTokens(boolean)} is on - this means previous method
+ * calls can know whether or not the token is new by examining the container.</li>
+ * </ul>
+ * Custom functionality when adding and removing tokens, such as showing a
+ * notification for duplicates or confirming removal, is done by overriding
+ * {@link #onTokenInput(Object)} and {@link #onTokenClick(Object)} respectively.
+ * In much the same way, {@link #onTokenDelete()} is called when the user
+ * presses delete or backspace when the input is empty, and can be customized.<br/>
+ * The token buttons can be styled customized by overriding
+ * {@link #configureTokenButton(TokenField, Object, Button).
+ * </p>
+ * <p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/>
+ * <p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/>
+ * <p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/>
+ * <p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/>
+ * <p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/>
+ * <p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/>
+ * <p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/><p>
+ * The content of the input (ComboBox) can be bound to a Container datasource,
+ * and filtering can be used. Note that the TokenField can select values that
+ * are not present in the ComboBox.<br/>
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * 
+ * Also note that if you use {@link #setTokenCaptionPropertyId(Object)} (to use
+ * a specific property as token caption) AND allow new tokens to be input (
+ * {@link #setNewTokensAllowed(boolean)}, you should probably use a custom
+ * {@link NewItemHandler) ({@link #setNewTokenHandler(NewItemHandler)}) in
+ * order to provide a sensible caption for the new token.
+ * </p>
+ * 
+ * <p>
+ * TokenField is a full-fledged field - it can be bound to a Property
+ * datasource, and supports buffering. The value is a Set of tokenIds; without
+ * a datasource it is an unmodifiable snapshot of the tokens (see
+ * {@link #getModel()}), never null, that does not change when the field
+ * does. A datasource is given a modifiable copy.
+ * </p>
+ * 
+ * <p>
+ * Note "token" and "tokenId" is often used interchangeably in the documentation
+ * - usually the token is just a string that is the id as well. The term
+ * <i>Token</i> as used in the method names is often interchangeable with the
+ * term <i>item</i> seen elsewhere in the Vaadin API; e.g
+ * {@link #setTokenCaption(Object, String)} works exactly as
+ * {@link ComboBox#setItemCaption(Object, String)}, and <code>tokenId</code> is
+ * the same as <code>itemId</code>.
+ * </p>
+ * 
+ */
+public class TokenField extends CustomField implements Container.Editor {
+
+    private static final long serialVersionUID = -4718188396491718742L;
+
+    public enum InsertPosition {
+        /**
+         * Tokens will be added after the input
+         */
+        AFTER,
+        /**
+         * Add tokens before the input
+         */
+        BEFORE
+    }
+
+    public enum TokenRenderMode {
+        /**
+         * Each token is a separate {@link Button} in the layout, configured by
+         * {@link TokenField#configureTokenButton(Object, Button)}
+         */
+        BUTTONS,
+        /**
+         * All tokens are rendered as chips by the input widget itself, from a
+         * compact token list; no component is created per token. Chips are
+         * styled with {@link TokenField#getTokenStyleName(Object)}.
+         * <p>
+         * Prefer this mode if sessions are serialized, e.g replicated in a
+         * cluster: every component is serialized with the UI, along with the
+         * state last sent to the browser, so token buttons can not be left out
+         * of a serialized session. Chips cost little more than the token ids
+         * and captions themselves.
+         * </p>
+         */
+        CHIPS
+    }
+
+    /**
+     * Token set change event, carrying the tokens added to and removed from
+     * the value of a {@link TokenField}. Fired once per value change, after
+     * the token buttons have been updated, so listeners can do work
+     * proportional to the change rather than to the whole value.
+     */
+    public static class TokenSetChangeEvent extends Component.Event {
+
+        private static final long serialVersionUID = 3920470617389126375L;
+
+        private final Set<Object> addedTokens;
+        private final Set<Object> removedTokens;
+
+        /**
+         * Creates a new token set change event.
+         * 
+         * @param source
+         *            the TokenField whose value changed
+         * @param addedTokens
+         *            the tokens that were added, in value order
+         * @param removedTokens
+         *            the tokens that were removed
+         */
+        public TokenSetChangeEvent(TokenField source, Set<Object> addedTokens,
+                Set<Object> removedTokens) {
+            super(source);
+            this.addedTokens = Collections.unmodifiableSet(addedTokens);
+            this.removedTokens = Collections.unmodifiableSet(removedTokens);
+        }
+
+        /**
+         * Gets the TokenField where the event occurred.
+         * 
+         * @return the source of the event
+         */
+        public TokenField getTokenField() {
+            return (TokenField) getSource();
+        }
+
+        /**
+         * Gets the tokens that were added by this change.
+         * 
+         * @return an unmodifiable set of added tokens, never null
+         */
+        public Set<Object> getAddedTokens() {
+            return addedTokens;
+        }
+
+        /**
+         * Gets the tokens that were removed by this change.
+         * 
+         * @return an unmodifiable set of removed tokens, never null
+         */
+        public Set<Object> getRemovedTokens() {
+            return removedTokens;
+        }
+    }
+
+    /**
+     * Listener interface for {@link TokenSetChangeEvent}s.
+     */
+    public interface TokenSetChangeListener extends Serializable {
+
+        public static final Method TOKEN_SET_CHANGE_METHOD = ReflectTools
+                .findMethod(TokenSetChangeListener.class, "tokenSetChange",
+                        TokenSetChangeEvent.class);
+
+        /**
+         * Called when tokens have been added to or removed from the value of a
+         * {@link TokenField}.
+         * 
+         * @param event
+         *            the event describing the change
+         */
+        public void tokenSetChange(TokenSetChangeEvent event);
+    }
+
+    public static final String STYLE_TOKENFIELD = "tokenfield";
+    public static final String STYLE_TOKENTEXTFIELD = "tokentextfield";
+
+    public static final String STYLE_BUTTON_EMPHAZISED = "emphasize";
+
+    public static final String STYLE_BUTTON_MORE = "more";
+
+    public static final String STYLE_TOKEN_LABEL = "tokenfield-tokens";
+
+    /**
+     * The layout currently in use
+     */
+    protected Layout layout;
+
+    /**
+     * Current insert position
+     */
+    protected InsertPosition insertPosition = InsertPosition.BEFORE;
+
+    /**
+     * The ComboBox used for input - should probably not be touched.
+     */
+    protected TokenComboBox cb = new TokenComboBox(insertPosition) {
+
+        private static final long serialVersionUID = -5550767105896319355L;
+
+        protected void onDelete(int count) {
+            if (!model.isEmpty() && count > 0) {
+                deleteLastTokens(count);
+                cb.focus();
+            }
+        }
+
+        protected void onTokenChipClick(String key) {
+            Object tokenId = chipKeys.get(key);
+            if (tokenId != null && !TokenField.this.isReadOnly()) {
+                onTokenClick(tokenId);
+            }
+        }
+
+        protected void onTokensPaste(String[] tokens) {
+            if (!TokenField.this.isReadOnly()) {
+                onTokensInput(tokenizer == null ? Arrays.asList(tokens)
+                        : tokenize(tokens));
+                cb.focus();
+            }
+        }
+    };
+
+    /**
+     * Maps the tokenId (itemId) to the token button, in token order. When the
+     * number of visible tokens is limited ({@link #setVisibleTokenLimit(int)}
+     * ), only the tokens that are shown have a button. The tokens themselves
+     * are in the model.
+     */
+    protected LinkedHashMap<Object, Button> buttons = new LinkedHashMap<Object, Button>();
+
+    /*
+     * Token buttons are only created for a prefix of the tokens; these track
+     * how long that prefix is and how far it should extend.
+     */
+    private int visibleTokenLimit = 0;
+    private int tokenPageLength = 0;
+    private int shownTokenTarget = 0;
+    private int shownTokenCount = 0;
+
+    /**
+     * The "+N more" button, shown after the token buttons while some tokens
+     * are not shown.
+     */
+    private Button moreButton;
+
+    /**
+     * Shared by all token buttons; the token is the data of the clicked
+     * button.
+     */
+    private final Button.ClickListener tokenClickListener = new Button.ClickListener() {
+        private static final long serialVersionUID = -1943432188848347317L;
+
+        public void buttonClick(ClickEvent event) {
+            onTokenClick(event.getButton().getData());
+        }
+    };
+
+    private TokenRenderMode renderMode = TokenRenderMode.BUTTONS;
+
+    /**
+     * Shows the tokens instead of token buttons while the field is read-only,
+     * if enabled
+     */
+    private boolean readOnlyLabel = false;
+    private Label tokenLabel;
+
+    /**
+     * Maps tokenIds to the keys used by chips in
+     * {@link TokenRenderMode#CHIPS} mode
+     */
+    private TokenKeyMapper chipKeys = new TokenKeyMapper();
+
+    /**
+     * null to present tokens based on the container
+     */
+    private TokenPresenter tokenPresenter;
+
+    /**
+     * The tokens being built while a batch of deletes is handled, null
+     * otherwise; every change of the tokens made meanwhile goes here
+     */
+    private LinkedHashSet<Object> batchValue;
+
+    /**
+     * Unmodifiable copy of the tokens, taken when the value is first read
+     * after a change, null otherwise
+     */
+    private transient Set<Object> valueSnapshot;
+
+    /**
+     * @deprecated kept in sync with the model for subclasses that read it; use
+     *             {@link #isRememberNewTokens()}
+     */
+    @Deprecated
+    protected boolean rememberNewTokens = true;
+
+    /**
+     * The tokens of the value, and the rules for accepting input; the value
+     * is a view of its tokens, and the buttons only follow its changes
+     */
+    private final TokenModel model = new TokenModel();
+
+    /**
+     * Token changes staged by other threads, applied by
+     * {@link #applyStagedTokens()}
+     */
+    private final TokenStage stagedTokens = new TokenStage();
+
+    /**
+     * Splits input into tokens, null to take input as one token
+     */
+    private Tokenizer tokenizer;
+
+    /**
+     * null unless the tokens are shared with other fields
+     */
+    private SharedTokenDocument sharedDocument;
+
+    /**
+     * The replica of the shared document while attached
+     */
+    private transient SharedTokenDocument.Replica documentReplica;
+
+    /**
+     * Whether {@link #documentReplica} was joined, to join again after
+     * deserialization
+     */
+    private boolean documentJoined;
+
+    /**
+     * True while changes of other editors are being applied, until
+     * setInternalValue, so they are not shared back
+     */
+    private boolean applyingDocument;
+
+    /**
+     * null when no metrics are collected
+     */
+    private TokenFieldMetrics metrics;
+
+    /**
+     * Create a new TokenField with a caption and a {@link InsertPosition}.
+     * 
+     * @param caption
+     *            the desired caption
+     * @param insertPosition
+     *            the desired insert position
+     */
+    public TokenField(String caption, InsertPosition insertPosition) {
+        this();
+        this.insertPosition = insertPosition;
+        setCaption(caption);
+    }
+
+    /**
+     * Create a new TokenField with a caption.
+     * 
+     * @param caption
+     *            the desired caption
+     */
+    public TokenField(String caption) {
+        this();
+        setCaption(caption);
+    }
+
+    /**
+     * Create a new TokenField.
+     * 
+     */
+    public TokenField() {
+        this(new CssLayout());
+    }
+
+    /**
+     * Create a new TokenField with a caption and a given layout.
+     * 
+     * @param caption
+     *            the desired caption
+     * @param lo
+     *            the desired layout
+     */
+    public TokenField(String caption, Layout lo) {
+        this(lo);
+        setCaption(caption);
+    }
+
+    /**
+     * Create a new TokenField with a caption, a given layout, and the specified
+     * token insert position.
+     * 
+     * @param caption
+     *            the desired caption
+     * @param lo
+     *            the desired layout
+     * @param insertPosition
+     *            the desired token insert position
+     */
+    public TokenField(String caption, Layout lo, InsertPosition insertPosition) {
+        this(lo);
+        setCaption(caption);
+        this.insertPosition = insertPosition;
+    }
+
+    /**
+     * Create a new TokenField with the given layout, and the specified token
+     * insert position.
+     * 
+     * @param lo
+     *            the desired layout
+     * @param insertPosition
+     *            the desired token insert position
+     */
+    public TokenField(Layout lo, InsertPosition insertPosition) {
+        this(lo);
+        this.insertPosition = insertPosition;
+    }
+
+    /**
+     * Create a new TokenField with the given layout.
+     * 
+     * @param lo
+     *            the desired layout
+     */
+    public TokenField(Layout lo) {
+        setStyleName(STYLE_TOKENFIELD + " " + STYLE_TOKENTEXTFIELD);
+
+        cb.setImmediate(true);
+        cb.setNewItemsAllowed(true);
+        model.setCaptionResolver(this::getTokenCaption);
+        model.setVocabulary(new InputVocabulary());
+        model.setRememberNewTokens(true);
+        cb.setNullSelectionAllowed(false);
+        cb.addListener(new ComboBox.ValueChangeListener() {
+
+            private static final long serialVersionUID = 4370326413130922134L;
+
+            public void valueChange(
+                    com.vaadin.v7.data.Property.ValueChangeEvent event) {
+                final Object tokenId = event.getProperty().getValue();
+                if (tokenId != null) {
+                    onTokenInput(tokenId);
+                    cb.setValue(null);
+                    cb.focus();
+                }
+            }
+        });
+
+        cb.setNewItemHandler(new NewItemHandler() {
+
+            private static final long serialVersionUID = 1L;
+
+            // This is essentially what the ComboBox.DefaultNewItemHandler does,
+            // but we'll first delegate adding token button, then add to
+            // container.
+            public void addNewItem(String tokenId) {
+                if (isReadOnly()) {
+                    throw new Property.ReadOnlyException();
+                }
+                if (tokenizer != null) {
+                    List<String> tokens = tokenize(tokenId);
+                    if (tokens.size() != 1) {
+                        if (!tokens.isEmpty()) {
+                            onTokensInput(tokens);
+                        }
+                        cb.focus();
+                        return;
+                    }
+                    tokenId = tokens.get(0);
+                }
+                if (metrics != null) {
+                    metrics.newTokensSubmitted(1);
+                }
+                onTokenInput(tokenId);
+                if (model.isRememberNewTokens()) {
+                    rememberToken(tokenId);
+                }
+                cb.focus();
+            }
+
+        });
+
+        setLayout(lo);
+
+    }
+
+    protected void rememberToken(String tokenId) {
+        Container c = cb.getContainerDataSource();
+        if (c instanceof SuggestionContainer) {
+            SuggestionContainer suggestions = (SuggestionContainer) c;
+            if (suggestions.getProvider().rememberToken(tokenId,
+                    getTokenCaption(tokenId))) {
+                suggestions.refresh();
+            }
+            return;
+        }
+        if (cb.addItem(getTokenCaption(tokenId)) != null) {
+            // Sets the caption property, if used
+            if (getTokenCaptionPropertyId() != null) {
+
+                cb.getContainerProperty(tokenId, getTokenCaptionPropertyId())
+                        .setValue(tokenId);
+
+            }
+        }
+    }
+
+    /*
+     * Brings the layout up to date with the input, the shown token buttons and
+     * the "+N more" button, moving as few components as possible: the longest
+     * run of components already in the right relative order stays in place,
+     * and only the rest is removed or (re)inserted. Toggling read-only or the
+     * insert position thus only moves the input, however many tokens there
+     * are.
+     */
+    private void reconcile() {
+        long start = metrics == null ? 0 : System.nanoTime();
+        List<Component> target = new ArrayList<Component>(buttons.size() + 2);
+        boolean showInput = !isReadOnly()
+                || renderMode == TokenRenderMode.CHIPS;
+        if (showInput && insertPosition == InsertPosition.AFTER) {
+            target.add(cb);
+        }
+        if (isTokenLabelShown()) {
+            target.add(tokenLabel);
+        } else {
+            target.addAll(buttons.values());
+        }
+        if (getHiddenTokenCount() > 0) {
+            target.add(getMoreButton());
+        }
+        if (showInput && insertPosition == InsertPosition.BEFORE) {
+            target.add(cb);
+        }
+
+        if (layout instanceof CssLayout
+                || layout instanceof AbstractOrderedLayout) {
+            moveComponents(target);
+        } else {
+            // components can only be appended
+            layout.removeAllComponents();
+            for (Component c : target) {
+                layout.addComponent(c);
+            }
+        }
+
+        if (layout instanceof HorizontalLayout && cb.getParent() == layout) {
+            ((HorizontalLayout) layout).setExpandRatio(cb, 1.0f);
+        }
+        if (metrics != null) {
+            metrics.reconciled(model.size(), System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Reorders the layout (a CssLayout or an ordered layout) to the target
+     * order.
+     */
+    private void moveComponents(List<Component> target) {
+        Map<Component, Integer> targetIndex = new IdentityHashMap<Component, Integer>(
+                target.size() * 2);
+        for (int i = 0; i < target.size(); i++) {
+            targetIndex.put(target.get(i), i);
+        }
+
+        // the current components that are in the target, as target indexes
+        List<Component> current = new ArrayList<Component>(
+                layout.getComponentCount());
+        int[] indexes = new int[layout.getComponentCount()];
+        List<Component> remove = new ArrayList<Component>();
+        for (Component c : layout) {
+            Integer index = targetIndex.get(c);
+            if (index == null) {
+                remove.add(c);
+            } else {
+                indexes[current.size()] = index;
+                current.add(c);
+            }
+        }
+        if (current.isEmpty()) {
+            layout.removeAllComponents();
+            for (Component c : target) {
+                layout.addComponent(c);
+            }
+            return;
+        }
+
+        // keep the longest increasing run of target indexes, move the rest
+        boolean[] keep = longestIncreasingSubsequence(indexes, current.size());
+        for (int i = 0; i < current.size(); i++) {
+            if (!keep[i]) {
+                remove.add(current.get(i));
+            }
+        }
+        for (Component c : remove) {
+            layout.removeComponent(c);
+        }
+        for (int i = 0; i < target.size(); i++) {
+            Component c = target.get(i);
+            if (c.getParent() != layout) {
+                if (layout instanceof CssLayout) {
+                    ((CssLayout) layout).addComponent(c, i);
+                } else {
+                    ((AbstractOrderedLayout) layout).addComponent(c, i);
+                }
+            }
+        }
+    }
+
+    /*
+     * Marks a longest strictly increasing subsequence of the first length
+     * values, in O(n log n).
+     */
+    private static boolean[] longestIncreasingSubsequence(int[] values,
+            int length) {
+        // tails[k]: index of the smallest tail of a run of length k + 1
+        int[] tails = new int[length];
+        int[] previous = new int[length];
+        int runs = 0;
+        for (int i = 0; i < length; i++) {
+            int low = 0;
+            int high = runs;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == runs) {
+                runs++;
+            }
+        }
+        boolean[] keep = new boolean[length];
+        for (int i = tails[runs - 1]; i >= 0; i = previous[i]) {
+            keep[i] = true;
+        }
+        return keep;
+    }
+
+    /*
+     * The tokens are stored only in the model; the value is a snapshot of them,
+     * copied lazily and kept until they change again. It is never null.
+     * 
+     * @see com.vaadin.v7.ui.AbstractField#getInternalValue()
+     */
+    @Override
+    protected Object getInternalValue() {
+        if (valueSnapshot == null) {
+            valueSnapshot = Collections
+                    .unmodifiableSet(new LinkedHashSet<Object>(model
+                            .getTokens()));
+        }
+        return valueSnapshot;
+    }
+
+    /*
+     * null means no tokens, so setting null on an empty field is no change.
+     */
+    @Override
+    protected void setValue(Object newFieldValue, boolean repaintIsNotNeeded,
+            boolean ignoreReadOnly) {
+        if (batchValue != null) {
+            batchValue = newFieldValue == null ? new LinkedHashSet<Object>()
+                    : new LinkedHashSet<Object>((Collection<?>) newFieldValue);
+            return;
+        }
+        super.setValue(newFieldValue == null ? Collections.emptySet()
+                : newFieldValue, repaintIsNotNeeded, ignoreReadOnly);
+    }
+
+    @Override
+    protected boolean isEmpty() {
+        return model.isEmpty();
+    }
+
+    /*
+     * A data source gets a modifiable copy, not the snapshot.
+     * 
+     * @see com.vaadin.v7.ui.AbstractField#getConvertedValue()
+     */
+    @Override
+    public Object getConvertedValue() {
+        Object value = super.getConvertedValue();
+        if (value != null && value == valueSnapshot) {
+            return new LinkedHashSet<Object>(valueSnapshot);
+        }
+        return value;
+    }
+
+    /*
+     * Lets the model diff the new value against the current tokens, then
+     * applies the removals and additions to the token buttons as one batch of
+     * layout mutations. The new value itself is not kept.
+     * 
+     * @see org.vaadin.tokenfield.CustomField#setInternalValue(java.lang.Object)
+     */
+    protected void setInternalValue(Object newValue) {
+
+        long start = metrics == null ? 0 : System.nanoTime();
+        // changes made by listeners of this one are shared again
+        boolean share = documentReplica != null && !applyingDocument;
+        applyingDocument = false;
+
+        TokenDelta delta = model.set((Collection<?>) newValue);
+        if (!delta.isEmpty()) {
+            valueSnapshot = null;
+        }
+        super.setInternalValue(model.getTokens());
+        Set<Object> remove = delta.getRemoved();
+        Set<Object> add = delta.getAdded();
+
+        for (Object tokenId : remove) {
+            removeTokenButton(tokenId);
+        }
+        addTokenButtons(showTokens());
+
+        if (renderMode == TokenRenderMode.CHIPS && !delta.isEmpty()) {
+            updateTokenChips();
+        }
+
+        if (share && !delta.isEmpty()) {
+            documentReplica.removeAll(remove);
+            documentReplica.addAll(add);
+        }
+
+        if (!delta.isEmpty()) {
+            fireEvent(new TokenSetChangeEvent(this, add, remove));
+        }
+        if (metrics != null) {
+            metrics.valueApplied(add.size(), remove.size(),
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Adds a listener that is notified with the added and removed tokens
+     * whenever the value changes. Unlike a value change listener, this does
+     * not require diffing the whole value to find out what changed.
+     * 
+     * @param listener
+     *            the listener to add
+     * @return a registration object for removing the listener
+     */
+    public Registration addTokenSetChangeListener(
+            TokenSetChangeListener listener) {
+        return addListener(TokenSetChangeEvent.class, listener,
+                TokenSetChangeListener.TOKEN_SET_CHANGE_METHOD);
+    }
+
+    /**
+     * Called when the user is adding a new token via the UI; called after the
+     * newItemHandler. Can be used to make customize the adding process; e.g to
+     * notify that the token was not added because it's duplicate, to ask for
+     * additional information, or to disallow addition due to some heuristics
+     * (not both A and Q).<br/>
+     * The default is to call {@link #addToken(Object)} which will add the token
+     * if it's not a duplicate.
+     * 
+     * @param tokenId
+     *            the token id selected (or input)
+     */
+    protected void onTokenInput(Object tokenId) {
+        addToken(tokenId);
+    }
+
+    /**
+     * Called when the user pastes several tokens at once into the input (see
+     * {@link #setPasteSeparators(String)}); the tokens have already been split,
+     * trimmed and de-duplicated by the client, or by the
+     * {@link #setTokenizer(Tokenizer) tokenizer}. Note that
+     * {@link #onTokenInput(Object)} is not called for the individual tokens.
+     * <br/>
+     * The default is to add all tokens with a single
+     * {@link #addTokens(Collection)} call, and to remember new ones if
+     * {@link #isRememberNewTokens()}. If new tokens are not allowed, only
+     * tokens found in the container are added (see
+     * {@link TokenModel#accept(Collection)}).
+     * 
+     * @param tokenIds
+     *            the pasted tokens, in order
+     */
+    protected void onTokensInput(List<String> tokenIds) {
+        List<Object> accepted = model.accept(tokenIds);
+        List<String> newTokens = new ArrayList<String>();
+        for (Object tokenId : accepted) {
+            if (!model.isKnown(tokenId)) {
+                newTokens.add((String) tokenId);
+            }
+        }
+        if (metrics != null && !newTokens.isEmpty()) {
+            metrics.newTokensSubmitted(newTokens.size());
+        }
+        addTokens(accepted);
+        if (model.isRememberNewTokens()) {
+            for (String tokenId : newTokens) {
+                rememberToken(tokenId);
+            }
+        }
+    }
+
+    /**
+     * Called when the token button is clicked, which by default removes the
+     * token by calling {@link #removeToken(Object)}. The behavior can be
+     * customized, e.g present a confirmation dialog.
+     * 
+     * @param tokenId
+     *            the id of the token that was clicked
+     */
+    protected void onTokenClick(Object tokenId) {
+        removeToken(tokenId);
+    }
+
+    /**
+     * Called with the last added token when the delete or backspace -key
+     * (depending in insert position) is pressed in an empty input. The default
+     * is to call {@link #onTokenClick(Object)} with the last added token, i.e
+     * remove last. The behavior can be customized, e.g present a confirmation
+     * dialog.
+     * <p>
+     * Repeated deletes (e.g a held key) are delivered in batches; this is then
+     * called for the last token, the one before it, and so on. Every change of
+     * the tokens made during the batch, e.g with {@link #removeToken(Object)},
+     * {@link #addTokens(Collection)} or {@link #setValue(Object)}, is applied
+     * in order as a single value change when the batch ends; until then the
+     * value is the one before the batch.
+     * </p>
+     * 
+     */
+    protected void onTokenDelete(Object tokenId) {
+        onTokenClick(tokenId);
+    }
+
+    private void deleteLastTokens(int count) {
+        List<Object> before = new ArrayList<Object>(model.getTokens());
+        batchValue = new LinkedHashSet<Object>(before);
+        try {
+            Object tokenId = model.getLast();
+            for (int i = 0; i < count && tokenId != null; i++) {
+                // get the previous one first, onTokenDelete may remove tokenId
+                Object previous = model.getPrevious(tokenId);
+                onTokenDelete(tokenId);
+                tokenId = previous;
+            }
+        } finally {
+            LinkedHashSet<Object> newSet = batchValue;
+            batchValue = null;
+            List<Object> current = new ArrayList<Object>(model.getTokens());
+            if (!before.equals(current)) {
+                // a data source changed the tokens meanwhile; apply the net
+                // change of the batch to them instead of overwriting them
+                Set<Object> removed = new LinkedHashSet<Object>(before);
+                removed.removeAll(newSet);
+                newSet.removeAll(before);
+                Set<Object> added = newSet;
+                newSet = new LinkedHashSet<Object>(model.getTokens());
+                newSet.removeAll(removed);
+                newSet.addAll(added);
+            }
+            if (!current.equals(new ArrayList<Object>(newSet))) {
+                setValue(newSet);
+            }
+        }
+    }
+
+    private Button createTokenButton(Object tokenId) {
+        Button b = new Button();
+        configureTokenButton(tokenId, b);
+        b.setData(tokenId);
+        b.addClickListener(tokenClickListener);
+        if (isReadOnly()) {
+            b.setEnabled(false);
+        }
+        return b;
+    }
+
+    /*
+     * Forgets the token buttons, so that showTokens() starts over; the layout
+     * is not touched.
+     */
+    private void clearTokenButtons() {
+        buttons.clear();
+        shownTokenCount = 0;
+    }
+
+    private boolean isTokenLabelShown() {
+        return readOnlyLabel && isReadOnly()
+                && renderMode == TokenRenderMode.BUTTONS;
+    }
+
+    /*
+     * Renders the shown tokens into the token label as chips.
+     */
+    private void updateTokenLabel() {
+        if (tokenLabel == null) {
+            tokenLabel = new Label("", ContentMode.HTML);
+            tokenLabel.setWidthUndefined();
+            tokenLabel.addStyleName(STYLE_TOKEN_LABEL);
+        }
+        StringBuilder html = new StringBuilder();
+        int i = 0;
+        for (Object tokenId : model.getTokens()) {
+            if (i++ == shownTokenCount) {
+                break;
+            }
+            TokenChipMarkup.appendChip(html, null, getTokenCaption(tokenId),
+                    getTokenStyleName(tokenId));
+        }
+        tokenLabel.setValue(html.toString());
+    }
+
+    /*
+     * Switches between the token buttons and the token label after the
+     * read-only state or the setting changed.
+     */
+    private void switchTokenPresentation() {
+        clearTokenButtons();
+        if (!isTokenLabelShown()) {
+            tokenLabel = null;
+        }
+        showTokens();
+        reconcile();
+    }
+
+    /*
+     * Creates buttons for the tokens following the shown prefix, until the
+     * prefix reaches the current target (or the end, if unlimited). Does not
+     * touch the layout.
+     */
+    private List<Button> showTokens() {
+        List<Button> shown = new ArrayList<Button>();
+        if (renderMode == TokenRenderMode.CHIPS) {
+            return shown;
+        }
+        if (isTokenLabelShown()) {
+            shownTokenCount = visibleTokenLimit <= 0 ? model.size() : Math.min(
+                    model.size(), shownTokenTarget);
+            updateTokenLabel();
+            return shown;
+        }
+        // the shown tokens are the first shownTokenCount ones
+        Object tokenId = shownTokenCount < model.size() ? model
+                .get(shownTokenCount) : null;
+        while (tokenId != null
+                && (visibleTokenLimit <= 0 || shownTokenCount < shownTokenTarget)) {
+            Button b = createTokenButton(tokenId);
+            buttons.put(tokenId, b);
+            shown.add(b);
+            shownTokenCount++;
+            tokenId = model.getNext(tokenId);
+        }
+        return shown;
+    }
+
+    /*
+     * Adds the given (newly shown) buttons to the layout in one go, and keeps
+     * the "+N more" button up to date; the input and the "+N more" button are
+     * moved at most once, regardless of the number of tokens.
+     */
+    private void addTokenButtons(List<Button> newButtons) {
+        boolean showMore = getHiddenTokenCount() > 0;
+        boolean moreInLayout = moreButton != null
+                && moreButton.getParent() == layout;
+        if (newButtons.isEmpty() && showMore == moreInLayout) {
+            if (showMore) {
+                configureMoreButton(getHiddenTokenCount(), moreButton);
+            }
+            return;
+        }
+        boolean moveInput = cb.getParent() == layout
+                && insertPosition == InsertPosition.BEFORE;
+        if (moveInput) {
+            layout.removeComponent(cb);
+        }
+        if (moreInLayout) {
+            layout.removeComponent(moreButton);
+        }
+        for (Button b : newButtons) {
+            layout.addComponent(b);
+        }
+        if (showMore) {
+            layout.addComponent(getMoreButton());
+        }
+        if (moveInput) {
+            layout.addComponent(cb);
+        }
+        if (layout instanceof HorizontalLayout) {
+            ((HorizontalLayout) layout).setExpandRatio(cb, 1.0f);
+        }
+    }
+
+    private Button getMoreButton() {
+        if (moreButton == null) {
+            moreButton = new Button();
+            moreButton.addClickListener(new Button.ClickListener() {
+                private static final long serialVersionUID = 6091823356112867134L;
+
+                public void buttonClick(ClickEvent event) {
+                    showMoreTokens();
+                }
+            });
+        }
+        configureMoreButton(getHiddenTokenCount(), moreButton);
+        return moreButton;
+    }
+
+    /**
+     * Adds a token if that token does not already exist.
+     * <p>
+     * Note that tokens are not automatically added to the token container. This
+     * means you can add tokens without adding them to the container (that might
+     * be bound to some data store), and without making them available to the
+     * user in the suggestion dropdown. <br/>
+     * This also means that when new tokens are disallowed (
+     * {@link #setNewTokensAllowed(boolean)}) you can programmatically add
+     * tokens that the user can not add him/herself. <br/>
+     * Consider adding the token to the container before calling
+     * {@link #addToken(Object)} if you're using a custom captions based on
+     * container/item properties, or if you want the token to be available to
+     * the user as a suggestion later.
+     * </p>
+     * 
+     * @param tokenId
+     *            the token to add
+     */
+    public void addToken(Object tokenId) {
+        if (batchValue != null) {
+            batchValue.add(tokenId);
+            return;
+        }
+        Set<Object> set = (Set<Object>) getValue();
+        if (set == null) {
+            set = new LinkedHashSet<Object>();
+        }
+        if (set.contains(tokenId)) {
+            return;
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        HashSet<Object> newSet = new LinkedHashSet<Object>(set);
+        newSet.add(tokenId);
+        setValue(newSet);
+        if (metrics != null) {
+            metrics.tokensAdded(1, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Removes the given token.
+     * <p>
+     * Note that the token is not removed from the container, so if it exists in
+     * the container, the token will still be available to the user.
+     * </p>
+     * 
+     * @param tokenId
+     *            the token to remove
+     */
+    public void removeToken(Object tokenId) {
+        if (batchValue != null) {
+            batchValue.remove(tokenId);
+            return;
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        Set<Object> set = (Set<Object>) getValue();
+        LinkedHashSet<Object> newSet = new LinkedHashSet<Object>(set);
+        boolean removed = newSet.remove(tokenId);
+
+        setValue(newSet);
+
+        if (metrics != null && removed) {
+            metrics.tokensRemoved(1, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Adds all the given tokens that do not already exist, in iteration order.
+     * <p>
+     * The value is copied and set only once, so this causes a single value
+     * change and a single batch of layout changes no matter how many tokens
+     * are added. Prefer this over calling {@link #addToken(Object)} in a loop.
+     * </p>
+     * 
+     * @see #addToken(Object)
+     * @param tokenIds
+     *            the tokens to add
+     */
+    public void addTokens(Collection<?> tokenIds) {
+        if (batchValue != null) {
+            batchValue.addAll(tokenIds);
+            return;
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        Set<Object> set = (Set<Object>) getValue();
+        LinkedHashSet<Object> newSet = set == null ? new LinkedHashSet<Object>()
+                : new LinkedHashSet<Object>(set);
+        if (newSet.addAll(tokenIds)) {
+            setValue(newSet);
+            if (metrics != null) {
+                metrics.tokensAdded(
+                        newSet.size() - (set == null ? 0 : set.size()),
+                        System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Removes all the given tokens.
+     * <p>
+     * The value is copied and set only once, so this causes a single value
+     * change and a single batch of layout changes no matter how many tokens
+     * are removed.
+     * </p>
+     * 
+     * @see #removeToken(Object)
+     * @param tokenIds
+     *            the tokens to remove
+     */
+    public void removeTokens(Collection<?> tokenIds) {
+        if (batchValue != null) {
+            batchValue.removeAll(tokenIds);
+            return;
+        }
+        Set<Object> set = (Set<Object>) getValue();
+        if (set == null || set.isEmpty()) {
+            return;
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        LinkedHashSet<Object> newSet = new LinkedHashSet<Object>(set);
+        boolean changed = false;
+        for (Object tokenId : tokenIds) {
+            changed |= newSet.remove(tokenId);
+        }
+        if (changed) {
+            setValue(newSet);
+            if (metrics != null) {
+                metrics.tokensRemoved(set.size() - newSet.size(),
+                        System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Replaces the current tokens with the given ones, in iteration order.
+     * Only the tokens that actually differ from the current value cause layout
+     * changes.
+     * 
+     * @param tokenIds
+     *            the new tokens
+     */
+    public void replaceTokens(Collection<?> tokenIds) {
+        setValue(new LinkedHashSet<Object>(tokenIds));
+    }
+
+    /**
+     * Imports the tokens of a text stream, e.g an uploaded CSV file, split by
+     * the {@link #setTokenizer(Tokenizer) tokenizer} or, if none is set, at
+     * commas, semicolons and line breaks, with '"' quoting. See
+     * {@link #importTokens(Reader, TokenImport)}.
+     * 
+     * @param reader
+     *            the text, not closed
+     * @return the counts of the import
+     * @throws IOException
+     *             if reading fails; the tokens read before have been added
+     */
+    public TokenImport.Progress importTokens(Reader reader) throws IOException {
+        Tokenizer importTokenizer = tokenizer;
+        if (importTokenizer == null) {
+            importTokenizer = new Tokenizer(",;\r\n");
+            importTokenizer.setQuote('"');
+        }
+        return importTokens(reader, new TokenImport(importTokenizer));
+    }
+
+    /**
+     * Imports the tokens of a text stream incrementally: only one chunk of
+     * the text is held at a time, tokens already in the field or imported
+     * before are dropped, and the new ones are added in batches of
+     * {@link TokenImport#getBatchSize()} with {@link #addTokens(Collection)},
+     * so each batch is one value change. Limits and progress reporting are
+     * set on the import.
+     * <p>
+     * For imports of many thousands of tokens, use
+     * {@link TokenRenderMode#CHIPS} or {@link #setVisibleTokenLimit(int)}, so
+     * that not every token gets a button. Like other changes, this must be
+     * called with the session locked; to import in a background thread
+     * instead, stage the batches:
+     * </p>
+     * 
+     * <pre>
+     * tokenImport.run(reader, tokenId -&gt; false, field::stageTokens);
+     * </pre>
+     * 
+     * @param reader
+     *            the text, not closed
+     * @param tokenImport
+     *            the import to run
+     * @return the counts of the import
+     * @throws IOException
+     *             if reading fails; the batches read before have been added
+     */
+    public TokenImport.Progress importTokens(Reader reader,
+            TokenImport tokenImport) throws IOException {
+        return tokenImport.run(reader, model::contains, this::addTokens);
+    }
+
+    /**
+     * Stages a token to be added by {@link #applyStagedTokens()}. Unlike
+     * {@link #addToken(Object)}, this can be called from any thread without
+     * holding the session lock, and never blocks: background threads (e.g a
+     * service suggesting tags) can stage tokens concurrently, and all changes
+     * staged in the meantime are applied as one value change.
+     * <p>
+     * The first change staged after the last apply schedules it with
+     * {@link UI#access(Runnable)}, so with server push the tokens show up
+     * without a request from the user. A field that is not attached applies
+     * its staged changes when it is attached. If the session is serialized
+     * before they are applied, the scheduled apply is lost; they are then
+     * applied with the next staged change.
+     * </p>
+     * 
+     * @param tokenId
+     *            the token to add
+     */
+    public void stageToken(Object tokenId) {
+        if (stagedTokens.add(tokenId)) {
+            scheduleStagedTokens();
+        }
+    }
+
+    /**
+     * Stages tokens to be added, in iteration order; see
+     * {@link #stageToken(Object)}.
+     * 
+     * @param tokenIds
+     *            the tokens to add
+     */
+    public void stageTokens(Collection<?> tokenIds) {
+        if (stagedTokens.addAll(tokenIds)) {
+            scheduleStagedTokens();
+        }
+    }
+
+    /**
+     * Stages a token to be removed; see {@link #stageToken(Object)}.
+     * 
+     * @param tokenId
+     *            the token to remove
+     */
+    public void stageTokenRemoval(Object tokenId) {
+        if (stagedTokens.remove(tokenId)) {
+            scheduleStagedTokens();
+        }
+    }
+
+    /**
+     * Stages tokens to be removed; see {@link #stageToken(Object)}.
+     * 
+     * @param tokenIds
+     *            the tokens to remove
+     */
+    public void stageTokenRemovals(Collection<?> tokenIds) {
+        if (stagedTokens.removeAll(tokenIds)) {
+            scheduleStagedTokens();
+        }
+    }
+
+    /**
+     * Applies all staged changes (see {@link #stageToken(Object)}) in the
+     * order they were staged, as a single value change. Like any other change
+     * of the field, this must be called with the session locked; it is called
+     * automatically, but may be called earlier, e.g before reading the value.
+     * <p>
+     * Staged changes are programmatic, so they are applied even if the field
+     * is read-only.
+     * </p>
+     */
+    public void applyStagedTokens() {
+        if (batchValue != null) {
+            stagedTokens.drainTo(batchValue);
+            return;
+        }
+        Set<Object> set = (Set<Object>) getValue();
+        LinkedHashSet<Object> newSet = set == null ? new LinkedHashSet<Object>()
+                : new LinkedHashSet<Object>(set);
+        if (stagedTokens.drainTo(newSet)) {
+            setValue(newSet, false, true);
+        }
+    }
+
+    /**
+     * @return true if changes have been staged but not applied yet
+     */
+    public boolean hasStagedTokens() {
+        return !stagedTokens.isEmpty();
+    }
+
+    private void scheduleStagedTokens() {
+        UI ui = getUI();
+        if (ui != null) {
+            ui.access(this::applyStagedTokens);
+        }
+    }
+
+    /**
+     * Shares the tokens of this field with all other fields (in any session)
+     * using the same document, e.g fields editing the tags of the same
+     * record. While the field is attached, its value follows the document:
+     * additions and removals made by any of the fields are merged (see
+     * {@link org.vaadin.tokenfield.model.ORSet}) and applied to the others
+     * with {@link UI#access(Runnable)}, so with server push other users see
+     * them right away. Only the changed tokens are passed between the fields.
+     * <p>
+     * A token removed by one user while another adds it again stays, and
+     * tokens never disappear because someone else set the value. When the
+     * field is attached (or when the document is set on an attached field)
+     * its value is replaced by the tokens of the document; changes made
+     * while the field is detached are not shared. If nobody has written the
+     * document yet, e.g the first editor of a record, the document is seeded
+     * with the value of the field instead, so set the value loaded from the
+     * record before attaching the field. After the session has been
+     * deserialized, the field catches up with the document at its next
+     * change.
+     * </p>
+     * 
+     * @param document
+     *            the document, e.g {@link SharedTokenDocument#get(String)},
+     *            or null to stop sharing
+     */
+    public void setSharedDocument(SharedTokenDocument document) {
+        leaveDocument();
+        sharedDocument = document;
+        if (document != null && isAttached()) {
+            joinDocument();
+        }
+    }
+
+    /**
+     * @return the document the tokens are shared with, null if not shared
+     */
+    public SharedTokenDocument getSharedDocument() {
+        return sharedDocument;
+    }
+
+    /**
+     * Applies the changes other fields have made to the shared document; see
+     * {@link #setSharedDocument(SharedTokenDocument)}. Called automatically
+     * with the session locked.
+     */
+    public void applySharedDocumentChanges() {
+        if (documentReplica == null) {
+            return;
+        }
+        documentReplica.drain();
+        Set<Object> tokens = documentReplica.getTokens();
+        Set<Object> set = (Set<Object>) getValue();
+        if (set == null) {
+            set = Collections.emptySet();
+        }
+        if (!set.equals(tokens)) {
+            // keep the order of the tokens that stay
+            LinkedHashSet<Object> newSet = new LinkedHashSet<Object>(set);
+            newSet.retainAll(tokens);
+            newSet.addAll(tokens);
+            applyingDocument = true;
+            try {
+                setValue(newSet, false, true);
+            } finally {
+                applyingDocument = false;
+            }
+        }
+    }
+
+    private void joinDocument() {
+        documentReplica = sharedDocument.join(this::scheduleDocumentChanges,
+                getTokenSet());
+        documentJoined = true;
+        applySharedDocumentChanges();
+    }
+
+    private Set<Object> getTokenSet() {
+        Set<Object> set = (Set<Object>) getValue();
+        return set == null ? Collections.emptySet() : set;
+    }
+
+    private void leaveDocument() {
+        if (documentReplica != null) {
+            documentReplica.leave();
+            documentReplica = null;
+        }
+        documentJoined = false;
+    }
+
+    /*
+     * Called by other editors' threads
+     */
+    private void scheduleDocumentChanges() {
+        UI ui = getUI();
+        if (ui != null) {
+            ui.access(this::applySharedDocumentChanges);
+        }
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        if (sharedDocument != null && documentReplica == null) {
+            joinDocument();
+        }
+        if (!stagedTokens.isEmpty()) {
+            applyStagedTokens();
+        }
+    }
+
+    @Override
+    public void detach() {
+        leaveDocument();
+        super.detach();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        if (documentJoined) {
+            // the document may be new in this JVM
+            documentReplica = sharedDocument.join(
+                    this::scheduleDocumentChanges, getTokenSet());
+        }
+    }
+
+    /*
+     * Sends the complete token list to the input widget, which renders the
+     * chips.
+     */
+    private void updateTokenChips() {
+        int size = model.size();
+        String[] keys = new String[size];
+        String[] captions = new String[size];
+        String[] styles = null;
+        int i = 0;
+        for (Object tokenId : model.getTokens()) {
+            keys[i] = chipKeys.key(tokenId);
+            // the caption is usually the token itself, so it is not copied;
+            // the client adds the remove mark
+            captions[i] = getTokenCaption(tokenId);
+            String style = getTokenStyleName(tokenId);
+            if (style != null) {
+                if (styles == null) {
+                    styles = new String[size];
+                }
+                styles[i] = style;
+            }
+            i++;
+        }
+        cb.setTokenChips(keys, captions, styles);
+    }
+
+    private void removeTokenButton(Object tokenId) {
+        chipKeys.remove(tokenId);
+        Button button = buttons.remove(tokenId);
+        if (button != null) {
+            layout.removeComponent(button);
+            shownTokenCount--;
+        }
+    }
+
+    /**
+     * Configures the token button.
+     * <p>
+     * By default, the caption, icon, description, and style is set. Override to
+     * customize.<br/>
+     * Note that the default click-listener is added elsewhere and can not be
+     * changed here; it finds the token through the button's data, which is
+     * set to the tokenId after this method returns.
+     * </p>
+     * 
+     * @param tokenId
+     *            the token this button pertains to
+     * @param button
+     *            the button to be configured
+     */
+    protected void configureTokenButton(Object tokenId, Button button) {
+        button.setCaption(getTokenCaption(tokenId) + " ×");
+        button.setIcon(getTokenIcon(tokenId));
+        button.setDescription("Click to remove");
+        button.setStyleName(ValoTheme.BUTTON_LINK);
+        String style = getTokenStyleName(tokenId);
+        if (style != null) {
+            button.addStyleName(style);
+        }
+    }
+
+    /**
+     * Gets the additional style name of the button or chip for the given
+     * token, e.g {@link #STYLE_BUTTON_EMPHAZISED}. By default the style of the
+     * {@link TokenPresenter}, if any, is used. Override to customize.
+     * 
+     * @param tokenId
+     *            the token the button or chip pertains to
+     * @return the style name, or null for none
+     */
+    protected String getTokenStyleName(Object tokenId) {
+        return tokenPresenter == null ? null : tokenPresenter
+                .getStyleName(tokenId);
+    }
+
+    /**
+     * Sets how tokens are presented: their caption, icon and style. By
+     * default (null), captions and icons come from the container like in a
+     * ComboBox. Use the same presenter with a {@link TokenChipRenderer} to
+     * show tokens in a Grid the way this field does.
+     * 
+     * @param tokenPresenter
+     *            the presenter, or null to use the container
+     */
+    public void setTokenPresenter(TokenPresenter tokenPresenter) {
+        this.tokenPresenter = tokenPresenter;
+        refreshTokens();
+    }
+
+    /*
+     * Shows the current captions and styles of all tokens.
+     */
+    private void refreshTokens() {
+        for (Map.Entry<Object, Button> e : buttons.entrySet()) {
+            configureTokenButton(e.getKey(), e.getValue());
+        }
+        if (renderMode == TokenRenderMode.CHIPS) {
+            updateTokenChips();
+        } else if (isTokenLabelShown()) {
+            updateTokenLabel();
+        }
+    }
+
+    /*
+     * Shows the current caption and style of one token.
+     */
+    private void refreshToken(Object tokenId) {
+        if (!model.contains(tokenId)) {
+            return;
+        }
+        Button button = buttons.get(tokenId);
+        if (button != null) {
+            configureTokenButton(tokenId, button);
+        }
+        if (renderMode == TokenRenderMode.CHIPS) {
+            updateTokenChips();
+        } else if (isTokenLabelShown()) {
+            updateTokenLabel();
+        }
+    }
+
+    /**
+     * @see #setTokenPresenter(TokenPresenter)
+     * @return the presenter, or null if tokens are presented based on the
+     *         container
+     */
+    public TokenPresenter getTokenPresenter() {
+        return tokenPresenter;
+    }
+
+    /**
+     * Sets how tokens are rendered: as separate buttons (the default), or as
+     * chips drawn by the input widget itself. Rendering chips creates no
+     * component per token, which saves considerable server memory and
+     * response size with large token sets.
+     * <p>
+     * Note that in {@link TokenRenderMode#CHIPS} mode,
+     * {@link #configureTokenButton(Object, Button)} and the visible token
+     * limit are not used, and the input stays visible (but read-only) when the
+     * field is read-only, since it renders the tokens.
+     * </p>
+     * 
+     * @see TokenRenderMode
+     * @param renderMode
+     *            the desired render mode
+     */
+    public void setTokenRenderMode(TokenRenderMode renderMode) {
+        if (this.renderMode == renderMode) {
+            return;
+        }
+        this.renderMode = renderMode;
+        clearTokenButtons();
+        shownTokenTarget = visibleTokenLimit;
+        if (!isTokenLabelShown()) {
+            tokenLabel = null;
+        }
+        if (renderMode == TokenRenderMode.CHIPS) {
+            updateTokenChips();
+            cb.setReadOnly(isReadOnly());
+        } else {
+            cb.setTokenChips(null, null, null);
+            chipKeys.removeAll();
+            cb.setReadOnly(false);
+            showTokens();
+        }
+        reconcile();
+    }
+
+    /**
+     * @see #setTokenRenderMode(TokenRenderMode)
+     * @return the current render mode
+     */
+    public TokenRenderMode getTokenRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * Configures the "+N more" button, shown after the token buttons when the
+     * number of visible tokens is limited and some tokens are not shown.
+     * Called whenever the number of hidden tokens changes.
+     * <p>
+     * By default, the caption, description and style is set. Override to
+     * customize.
+     * </p>
+     * 
+     * @see #setVisibleTokenLimit(int)
+     * @param hiddenCount
+     *            the number of tokens currently not shown
+     * @param button
+     *            the button to be configured
+     */
+    protected void configureMoreButton(int hiddenCount, Button button) {
+        button.setCaption("+" + hiddenCount + " more");
+        button.setDescription("Click to show more");
+        button.setStyleName(ValoTheme.BUTTON_LINK + " " + STYLE_BUTTON_MORE);
+    }
+
+    /**
+     * Limits the number of tokens that get a token button. Only the first
+     * <code>limit</code> tokens are shown, followed by a "+N more" button that
+     * shows more of them, {@link #setTokenPageLength(int)} at a time. The value
+     * itself is not affected. Useful when the value may contain thousands of
+     * tokens.
+     * 
+     * @param limit
+     *            the number of tokens initially shown, or 0 to show all (the
+     *            default)
+     */
+    public void setVisibleTokenLimit(int limit) {
+        visibleTokenLimit = Math.max(0, limit);
+        clearTokenButtons();
+        shownTokenTarget = visibleTokenLimit;
+        showTokens();
+        reconcile();
+    }
+
+    /**
+     * @see #setVisibleTokenLimit(int)
+     * @return the number of tokens initially shown, or 0 if all are shown
+     */
+    public int getVisibleTokenLimit() {
+        return visibleTokenLimit;
+    }
+
+    /**
+     * Sets how many more tokens are shown each time the "+N more" button is
+     * clicked.
+     * 
+     * @see #setVisibleTokenLimit(int)
+     * @param pageLength
+     *            the number of tokens to show at a time, or 0 to use the
+     *            visible token limit (the default)
+     */
+    public void setTokenPageLength(int pageLength) {
+        tokenPageLength = Math.max(0, pageLength);
+    }
+
+    /**
+     * @see #setTokenPageLength(int)
+     * @return the number of tokens shown at a time, or 0 if the visible token
+     *         limit is used
+     */
+    public int getTokenPageLength() {
+        return tokenPageLength;
+    }
+
+    /**
+     * Shows the next page of tokens, as if the "+N more" button was clicked.
+     * Does nothing if all tokens are shown.
+     */
+    public void showMoreTokens() {
+        if (getHiddenTokenCount() == 0) {
+            return;
+        }
+        shownTokenTarget = shownTokenCount
+                + (tokenPageLength > 0 ? tokenPageLength : visibleTokenLimit);
+        addTokenButtons(showTokens());
+    }
+
+    /**
+     * Gets the number of tokens in the value that currently have no token
+     * button because of the visible token limit.
+     * 
+     * @see #setVisibleTokenLimit(int)
+     * @return the number of hidden tokens
+     */
+    public int getHiddenTokenCount() {
+        if (renderMode == TokenRenderMode.CHIPS) {
+            return 0;
+        }
+        return model.size() - shownTokenCount;
+    }
+
+    /**
+     * Gets the layout currently in use.
+     * 
+     * @return the current layout
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Sets layout used for laying out the tokens and the input.
+     * 
+     * @param newLayout
+     *            the layout to use
+     */
+    protected void setLayout(Layout newLayout) {
+        if (layout != null) {
+            layout.removeAllComponents();
+        }
+        layout = newLayout;
+        // TODO
+        // setCompositionRoot(layout);
+        reconcile();
+    }
+
+    /**
+     * Gets the current token {@link InsertPosition}.<br/>
+     * The token buttons are be placed at this position, relative to the input
+     * box.
+     * 
+     * @see #setTokenInsertPosition(InsertPosition)
+     * @see InsertPosition
+     * @return the current token insert position
+     */
+    public InsertPosition getTokenInsertPosition() {
+        return insertPosition;
+    }
+
+    /**
+     * Sets the token {@link InsertPosition}.<br/>
+     * The token buttons will be placed at this position, relative to the input
+     * box.
+     * 
+     * @see #getTokenInsertPosition()
+     * @see InsertPosition
+     */
+    public void setTokenInsertPosition(InsertPosition insertPosition) {
+        if (this.insertPosition != insertPosition) {
+            this.insertPosition = insertPosition;
+            cb.setTokenInsertPosition(insertPosition);
+            reconcile();
+        }
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        if (readOnly == isReadOnly()) {
+            return;
+        }
+        boolean labelShown = isTokenLabelShown();
+        super.setReadOnly(readOnly);
+        if (renderMode == TokenRenderMode.CHIPS) {
+            cb.setReadOnly(readOnly);
+            return;
+        }
+        if (labelShown != isTokenLabelShown()) {
+            switchTokenPresentation();
+            return;
+        }
+        for (Button b : buttons.values()) {
+            b.setEnabled(!readOnly);
+        }
+        if (readOnly) {
+            layout.removeComponent(cb);
+        } else {
+            reconcile();
+        }
+    }
+
+    /**
+     * Sets whether a read-only field shows its tokens in a single label
+     * instead of token buttons. The label is rendered from the token captions
+     * and {@link #getTokenStyleName(Object)}, looking like chips;
+     * {@link #configureTokenButton(Object, Button)} is not used for it.
+     * <p>
+     * No token buttons are kept while the label is shown, so read-only fields
+     * with many tokens are cheap, and toggling read-only does not touch every
+     * button. The buttons are created again when the field becomes editable.
+     * Only applies to {@link TokenRenderMode#BUTTONS} mode.
+     * </p>
+     *
+     * @param readOnlyLabel
+     *            true to show a label when read-only, false to keep the
+     *            (disabled) token buttons (the default)
+     */
+    public void setReadOnlyLabel(boolean readOnlyLabel) {
+        if (this.readOnlyLabel == readOnlyLabel) {
+            return;
+        }
+        boolean labelShown = isTokenLabelShown();
+        this.readOnlyLabel = readOnlyLabel;
+        if (labelShown != isTokenLabelShown()) {
+            switchTokenPresentation();
+        }
+    }
+
+    /**
+     * @see #setReadOnlyLabel(boolean)
+     * @return true if a read-only field shows its tokens in a single label
+     */
+    public boolean isReadOnlyLabel() {
+        return readOnlyLabel;
+    }
+
+    /**
+     * Sets the Container data source used for the input box. This works exactly
+     * as {@link ComboBox#setContainerDataSource(Container)}.
+     * 
+     * @see ComboBox#setContainerDataSource(Container)
+     * @param c
+     *            the token container data source
+     */
+    public void setContainerDataSource(Container c) {
+        cb.setContainerDataSource(c);
+        refreshTokens();
+    }
+
+    /**
+     * Sets a {@link SuggestionProvider} as the source of suggestions for the
+     * input box, instead of a container. The provider is queried lazily, one
+     * page of suggestions at a time, so the vocabulary does not need to be in
+     * memory.
+     * <p>
+     * This replaces the container data source, and sets the token caption
+     * mode to use the captions of the provider. Note that new tokens are only
+     * remembered if the provider supports it (see
+     * {@link SuggestionProvider#rememberToken(Object, String)}). Tokens are
+     * captioned with {@link SuggestionProvider#getCaption(Object)}, and those
+     * the provider does not {@link SuggestionProvider#contains(Object)
+     * contain} count as new. {@link #getTokenIds()} pages through the
+     * provider as it is iterated.
+     * </p>
+     * <p>
+     * Providers should implement {@link SuggestionProvider#count(String,
+     * FilteringMode)} and {@link SuggestionProvider#contains(Object)} if they
+     * can: otherwise no more than
+     * {@link SuggestionProvider#COUNT_ESTIMATE_LIMIT} matches are counted, so
+     * the suggestion popup offers at most that many, and
+     * {@link #getTokenIds()} finds tokens only among that many suggestions.
+     * </p>
+     * <p>
+     * To avoid re-evaluating filters the users type repeatedly, wrap the
+     * provider in a {@link CachingSuggestionProvider}; one cache can be shared
+     * by all fields using the same provider.
+     * </p>
+     * 
+     * @param provider
+     *            the suggestion provider, or null to remove it
+     */
+    public void setSuggestionProvider(SuggestionProvider provider) {
+        if (provider == null) {
+            if (getSuggestionProvider() != null) {
+                cb.setContainerDataSource(null);
+                cb.setItemCaptionMode(ItemCaptionMode.EXPLICIT_DEFAULTS_ID);
+            }
+            return;
+        }
+        cb.setContainerDataSource(new SuggestionContainer(provider));
+        cb.setItemCaptionMode(ItemCaptionMode.PROPERTY);
+        cb.setItemCaptionPropertyId(SuggestionContainer.CAPTION_PROPERTY_ID);
+        refreshTokens();
+    }
+
+    /**
+     * @see #setSuggestionProvider(SuggestionProvider)
+     * @return the current suggestion provider, or null if a container is used
+     */
+    public SuggestionProvider getSuggestionProvider() {
+        Container c = cb.getContainerDataSource();
+        if (c instanceof SuggestionContainer) {
+            return ((SuggestionContainer) c).getProvider();
+        }
+        return null;
+    }
+
+    /**
+     * Sets the metrics this field reports to: the number and duration of
+     * token additions and removals, layout reconciliations and value changes,
+     * suggestion lookups, delete requests from the client, and new tokens
+     * submitted by the user. One instance can be shared by many fields, see
+     * {@link AggregatingTokenFieldMetrics}.
+     *
+     * @param metrics
+     *            the metrics, or null or {@link TokenFieldMetrics#NONE} for
+     *            none (the default)
+     */
+    public void setMetrics(TokenFieldMetrics metrics) {
+        this.metrics = metrics == TokenFieldMetrics.NONE ? null : metrics;
+        cb.setMetrics(this.metrics);
+    }
+
+    /**
+     * @return the metrics this field reports to, {@link TokenFieldMetrics#NONE}
+     *         if none
+     */
+    public TokenFieldMetrics getMetrics() {
+        return metrics == null ? TokenFieldMetrics.NONE : metrics;
+    }
+
+    /**
+     * Gets the Container data source currently used for the input box. This
+     * works exactly as {@link ComboBox#getContainerDataSource()}.
+     * 
+     * @see ComboBox#getContainerDataSource()
+     * @return the container used to tokens
+     */
+    public Container getContainerDataSource() {
+        return cb.getContainerDataSource();
+    }
+
+    /**
+     * Sets whether or not tokens entered by the user that not present in the
+     * container are allowed. When true, the token is added, and if
+     * {@link #setRememberNewTokens(boolean)} is true, the new token will be
+     * added to the container as well.
+     * 
+     * @see #setNewTokenHandler(NewItemHandler)
+     * @param allowNewTokens
+     *            true to allow tokens that are not in the container
+     */
+    public void setNewTokensAllowed(boolean allowNewTokens) {
+        cb.setNewItemsAllowed(allowNewTokens);
+        model.setNewTokensAllowed(allowNewTokens);
+    }
+
+    /**
+     * Checks whether or not new tokens are allowed
+     * 
+     * @see #setNewTokensAllowed(boolean)
+     * @return
+     */
+    public boolean isNewTokensAllowed() {
+        return model.isNewTokensAllowed();
+    }
+
+    /**
+     * If true, new tokens entered by the user are automatically added to the
+     * container.
+     * 
+     * @return true if tokens are automatically added
+     */
+    public boolean isRememberNewTokens() {
+        return model.isRememberNewTokens();
+    }
+
+    /**
+     * Provided new tokens are allowed ({@link #setNewTokensAllowed(boolean)}),
+     * this sets whether or not new tokens entered by the user are automatically
+     * added to the container.
+     * 
+     * @param rememberNewTokens
+     *            true to add new tokens automatically
+     */
+    public void setRememberNewTokens(boolean rememberNewTokens) {
+        this.rememberNewTokens = rememberNewTokens;
+        model.setRememberNewTokens(rememberNewTokens);
+    }
+
+    /**
+     * Gets the model holding the tokens of this field; the value of the field
+     * is a snapshot of its tokens. It must not be changed directly, since the
+     * field would not notice; use it to read the tokens, e.g by position, or
+     * to listen to changes of them without a session. The model captions
+     * tokens with {@link #getTokenCaption(Object)}, knows the tokens of the
+     * container, and holds the rules for new tokens.
+     * 
+     * @return the token model, never null
+     */
+    public TokenModel getModel() {
+        return model;
+    }
+
+    /*
+     * The tokens known to the model are the ones of the suggestion provider
+     * or container; new tokens are remembered the way the field itself
+     * remembers them.
+     */
+    private class InputVocabulary implements Vocabulary {
+
+        private static final long serialVersionUID = -3088176129213398553L;
+
+        @Override
+        public boolean contains(Object tokenId) {
+            SuggestionProvider provider = getSuggestionProvider();
+            return provider != null ? provider.contains(tokenId) : cb
+                    .containsId(tokenId);
+        }
+
+        @Override
+        public String getCaption(Object tokenId) {
+            return getTokenCaption(tokenId);
+        }
+
+        @Override
+        public boolean rememberToken(Object tokenId, String caption) {
+            if (contains(tokenId)) {
+                return false;
+            }
+            TokenField.this.rememberToken(String.valueOf(tokenId));
+            return true;
+        }
+    }
+
+    /**
+     * Works as {@link ComboBox#setFilteringMode(int)}.
+     * 
+     * @see ComboBox#setFilteringMode(int)
+     * @param filteringMode
+     *            the desired filtering mode
+     */
+    public void setFilteringMode(FilteringMode filteringMode) {
+        cb.setFilteringMode(filteringMode);
+    }
+
+    /**
+     * Works as {@link ComboBox#getFilteringMode()}.
+     * 
+     * @see ComboBox#getFilteringMode()
+     * @param filteringMode
+     *            the desired filtering mode
+     */
+    public FilteringMode getFilteringMode() {
+        return cb.getFilteringMode();
+    }
+
+    /**
+     * Sets how long the input waits after the last keystroke before asking
+     * the server for suggestions, so that typing a word causes one request
+     * instead of one per character. Suggestions received for a filter the
+     * user has already typed past are not shown. The default is 0, i.e no
+     * delay.
+     * 
+     * @param filterDelay
+     *            the delay in milliseconds
+     */
+    public void setFilterDelay(int filterDelay) {
+        if (filterDelay < 0) {
+            throw new IllegalArgumentException(
+                    "filterDelay can not be negative");
+        }
+        cb.setFilterDelay(filterDelay);
+    }
+
+    /**
+     * @see #setFilterDelay(int)
+     * @return the delay in milliseconds
+     */
+    public int getFilterDelay() {
+        return cb.getFilterDelay();
+    }
+
+    /**
+     * Sets how many characters must be typed before suggestions are shown;
+     * shorter input is not sent to the server. The suggestion popup button
+     * still shows all suggestions. The default is 0.
+     * 
+     * @param minFilterLength
+     *            the minimum number of characters
+     */
+    public void setMinFilterLength(int minFilterLength) {
+        if (minFilterLength < 0) {
+            throw new IllegalArgumentException(
+                    "minFilterLength can not be negative");
+        }
+        cb.setMinFilterLength(minFilterLength);
+    }
+
+    /**
+     * @see #setMinFilterLength(int)
+     * @return the minimum number of characters
+     */
+    public int getMinFilterLength() {
+        return cb.getMinFilterLength();
+    }
+
+    /**
+     * Sets the characters that separate tokens pasted into the input, e.g
+     * ",;\n". When text containing any of them is pasted, it is split into
+     * tokens in the browser, duplicates are dropped, and all tokens are sent
+     * to the server in one request and added as one batch (see
+     * {@link #onTokensInput(List)}). Surrounding whitespace is trimmed from
+     * every token. The default is null, i.e pasted text is handled as if
+     * typed.
+     * 
+     * @param pasteSeparators
+     *            the separator characters, or null to disable
+     */
+    public void setPasteSeparators(String pasteSeparators) {
+        cb.setPasteSeparators(pasteSeparators);
+    }
+
+    /**
+     * @see #setPasteSeparators(String)
+     * @return the separator characters, or null if disabled
+     */
+    public String getPasteSeparators() {
+        return cb.getPasteSeparators();
+    }
+
+    /**
+     * Sets the tokenizer that splits the user's input into tokens, e.g to
+     * allow quoted tokens containing separators. Typed input is split when
+     * submitted: a single token is input as usual (see
+     * {@link #onTokenInput(Object)}), several are input at once (see
+     * {@link #onTokensInput(List)}).
+     * <p>
+     * The paste separators are set to the separators of the tokenizer, and
+     * pasted text is sent to the server unsplit, to be split by the
+     * tokenizer; this replaces overriding {@link #onTokenInput(Object)} to
+     * split input.
+     * </p>
+     * 
+     * @param tokenizer
+     *            the tokenizer, or null to take input as one token and let
+     *            the client split pasted text (the default)
+     */
+    public void setTokenizer(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        if (tokenizer != null) {
+            cb.setPasteSeparators(tokenizer.getSeparators());
+        }
+        cb.setPasteUnsplit(tokenizer != null);
+    }
+
+    /**
+     * @see #setTokenizer(Tokenizer)
+     * @return the tokenizer, or null if none
+     */
+    public Tokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    /*
+     * Splits the input with the tokenizer, dropping duplicates
+     */
+    private List<String> tokenize(String... texts) {
+        LinkedHashSet<String> tokens = new LinkedHashSet<String>();
+        for (String text : texts) {
+            tokenizer.tokenize(text, tokens::add);
+        }
+        return new ArrayList<String>(tokens);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.vaadin.tokenfield.CustomField#focus()
+     */
+    public void focus() {
+        cb.focus();
+    }
+
+    /**
+     * Gets the input prompt; works as {@link ComboBox#getInputPrompt()}.
+     * 
+     * @see ComboBox#getInputPrompt()
+     * @return the current input prompt
+     */
+    public String getInputPrompt() {
+        return cb.getInputPrompt();
+    }
+
+    /**
+     * Gets the caption for the given token; the caption can be based on a
+     * property, just as in a ComboBox. Note that the string representation of
+     * the tokenId itself is always used if the container does not contain the
+     * id. If a {@link TokenPresenter} is set, its caption is used instead;
+     * with a {@link SuggestionProvider}, the caption of the provider.
+     * 
+     * @param tokenId
+     *            the id of the token
+     * @return the caption
+     */
+    public String getTokenCaption(Object tokenId) {
+        if (tokenPresenter != null) {
+            return tokenPresenter.getCaption(tokenId);
+        }
+        SuggestionProvider provider = getSuggestionProvider();
+        if (provider != null) {
+            return provider.getCaption(tokenId);
+        } else if (cb.containsId(tokenId)) {
+            return cb.getItemCaption(tokenId);
+        } else {
+            return String.valueOf(tokenId);
+        }
+    }
+
+    /**
+     * @see ComboBox#getItemCaptionMode()
+     * @return the current caption mode
+     */
+    public ItemCaptionMode getTokenCaptionMode() {
+        return cb.getItemCaptionMode();
+    }
+
+    /**
+     * @see ComboBox#getItemCaptionPropertyId()
+     * @return the current caption property id
+     */
+    public Object getTokenCaptionPropertyId() {
+        return cb.getItemCaptionPropertyId();
+    }
+
+    /**
+     * Gets the icon for the given token, from the {@link TokenPresenter} if
+     * one is set.
+     * 
+     * @see ComboBox#getItemIcon(Object)
+     * @return the icon for the given resource
+     */
+
+    public Resource getTokenIcon(Object tokenId) {
+        if (tokenPresenter != null) {
+            return tokenPresenter.getIcon(tokenId);
+        }
+        return cb.getItemIcon(tokenId);
+    }
+
+    /**
+     * @see ComboBox#getItemIconPropertyId()
+     * @return the current item icon property id
+     */
+
+    public Object getTokenIconPropertyId() {
+        return cb.getItemIconPropertyId();
+    }
+
+    /**
+     * Gets all tokenIds currently in the token container. With a
+     * {@link SuggestionProvider}, the collection fetches the ids page by page
+     * as it is iterated.
+     * 
+     * @return a collection of all tokenIds in the container
+     */
+    public Collection getTokenIds() {
+        return cb.getItemIds();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.vaadin.tokenfield.CustomField#getTabIndex()
+     */
+    public int getTabIndex() {
+        return cb.getTabIndex();
+    }
+
+    /*-
+    @Override
+    public void setHeight(String height) {
+        this.layout.setHeight(height);
+        super.setHeight(height);
+    }
+
+    @Override
+    public void setWidth(String width) {
+        this.layout.setWidth(width);
+        super.setWidth(width);
+    }
+    -*/
+
+    @Override
+    public void setHeight(float height, Unit unit) {
+        if (this.layout != null) {
+            this.layout.setHeight(height, unit);
+        }
+        super.setHeight(height, unit);
+    }
+
+    @Override
+    public void setWidth(float width, Unit unit) {
+        if (this.layout != null) {
+            this.layout.setWidth(width, unit);
+        }
+        super.setWidth(width, unit);
+    }
+
+    @Override
+    public void setSizeFull() {
+        if (this.layout != null) {
+            this.layout.setSizeFull();
+        }
+        super.setSizeFull();
+    }
+
+    @Override
+    public void setSizeUndefined() {
+        if (this.layout != null) {
+            this.layout.setSizeUndefined();
+        }
+        super.setSizeUndefined();
+    }
+
+    public void setInputHeight(String height) {
+        this.cb.setHeight(height);
+    }
+
+    public void setInputWidth(String width) {
+        this.cb.setWidth(width);
+    }
+
+    public void setInputHeight(float height, Unit unit) {
+        this.cb.setHeight(height, unit);
+    }
+
+    public void setInputWidth(float width, Unit unit) {
+        this.cb.setWidth(width, unit);
+    }
+
+    public void setInputSizeFull() {
+        this.cb.setSizeFull();
+    }
+
+    public void setInputSizeUndefined() {
+        this.cb.setSizeUndefined();
+    }
+
+    /**
+     * Sets the input prompt; works as {@link ComboBox#setInputPrompt(String)}.
+     * 
+     * @see ComboBox#setInputPrompt(String)
+     * @return the current input prompt
+     */
+    public void setInputPrompt(String inputPrompt) {
+        cb.setInputPrompt(inputPrompt);
+    }
+
+    /**
+     * sets the caption for the given token.
+     * 
+     * @see ComboBox#setItemCaption(Object, String)
+     * @param tokenId
+     *            token whose caption to set
+     * @param caption
+     *            the desired caption
+     */
+    public void setTokenCaption(Object tokenId, String caption) {
+        cb.setItemCaption(tokenId, caption);
+        refreshToken(tokenId);
+    }
+
+    /**
+     * @see ComboBox#setItemCaptionMode(int)
+     * @param mode
+     */
+    public void setTokenCaptionMode(ItemCaptionMode mode) {
+        cb.setItemCaptionMode(mode);
+        refreshTokens();
+    }
+
+    /**
+     * @see ComboBox#setItemCaptionPropertyId(Object)
+     * @param propertyId
+     */
+    public void setTokenCaptionPropertyId(Object propertyId) {
+        cb.setItemCaptionPropertyId(propertyId);
+        refreshTokens();
+    }
+
+    /**
+     * @see ComboBox#setItemIcon(Object, Resource)
+     * @param tokenId
+     * @param icon
+     */
+    public void setTokenIcon(Object tokenId, Resource icon) {
+        cb.setItemIcon(tokenId, icon);
+        refreshToken(tokenId);
+    }
+
+    /**
+     * @see ComboBox#setItemIconPropertyId(Object)
+     * @param propertyId
+     */
+    public void setTokenIconPropertyId(Object propertyId) {
+        cb.setItemIconPropertyId(propertyId);
+        refreshTokens();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.vaadin.tokenfield.CustomField#setTabIndex(int)
+     */
+    public void setTabIndex(int tabIndex) {
+        cb.setTabIndex(tabIndex);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.vaadin.tokenfield.CustomField#getType()
+     */
+    @Override
+    public Class<?> getType() {
+        return Set.class;
+    }
+
+    @Override
+    protected Component initContent() {
+        return layout;
+    }
+
+}
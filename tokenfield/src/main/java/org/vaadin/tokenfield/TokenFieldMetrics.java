@@ -0,0 +1,118 @@
+package org.vaadin.tokenfield;
+
+import java.io.Serializable;
+
+/**
+ * Receives timings and counts of what a {@link TokenField} does, e.g to
+ * export them to a monitoring system. All methods default to doing nothing,
+ * so only the interesting ones need to be implemented.
+ * <p>
+ * Methods are called synchronously while the session is locked, and should
+ * return quickly. One instance may be shared by many fields (and sessions),
+ * in which case it must be safe for concurrent use.
+ * </p>
+ * <p>
+ * A field without metrics ({@link #NONE}, the default) does not read the
+ * clock at all.
+ * </p>
+ *
+ * @see TokenField#setMetrics(TokenFieldMetrics)
+ * @see AggregatingTokenFieldMetrics
+ */
+public interface TokenFieldMetrics extends Serializable {
+
+    /**
+     * Metrics that are not collected.
+     */
+    public static final TokenFieldMetrics NONE = new TokenFieldMetrics() {
+        private static final long serialVersionUID = 8133213598436311520L;
+    };
+
+    /**
+     * Called when tokens have been added with {@link TokenField#addToken(Object)}
+     * or {@link TokenField#addTokens(java.util.Collection)}.
+     *
+     * @param count
+     *            the number of tokens actually added
+     * @param nanos
+     *            how long adding them took, including the value change
+     */
+    public default void tokensAdded(int count, long nanos) {
+    }
+
+    /**
+     * Called when tokens have been removed with
+     * {@link TokenField#removeToken(Object)} or
+     * {@link TokenField#removeTokens(java.util.Collection)}.
+     *
+     * @param count
+     *            the number of tokens actually removed
+     * @param nanos
+     *            how long removing them took, including the value change
+     */
+    public default void tokensRemoved(int count, long nanos) {
+    }
+
+    /**
+     * Called when the layout of the field has been brought up to date after a
+     * change affecting all tokens, e.g of the read-only state or the input
+     * position.
+     *
+     * @param tokenCount
+     *            the number of tokens in the field
+     * @param nanos
+     *            how long updating the layout took
+     */
+    public default void reconciled(int tokenCount, long nanos) {
+    }
+
+    /**
+     * Called whenever a new value has been applied to the tokens, however it
+     * was set.
+     *
+     * @param added
+     *            the number of tokens added by the new value
+     * @param removed
+     *            the number of tokens removed by the new value
+     * @param nanos
+     *            how long diffing and applying the value took
+     */
+    public default void valueApplied(int added, int removed, long nanos) {
+    }
+
+    /**
+     * Called when suggestions have been looked up for the client.
+     *
+     * @param filter
+     *            the filter typed by the user, in lower case; null or empty
+     *            for none
+     * @param resultCount
+     *            the number of suggestions found; when the container does
+     *            the filtering, this is at most one page
+     * @param nanos
+     *            how long the lookup took
+     */
+    public default void suggestionsFiltered(String filter, int resultCount,
+            long nanos) {
+    }
+
+    /**
+     * Called when the client asks to delete tokens, e.g because backspace was
+     * pressed in the empty input.
+     *
+     * @param count
+     *            the number of tokens to delete
+     */
+    public default void deleteRequested(int count) {
+    }
+
+    /**
+     * Called when the user submits tokens that are not suggestions, by typing
+     * or pasting them.
+     *
+     * @param count
+     *            the number of new tokens submitted
+     */
+    public default void newTokensSubmitted(int count) {
+    }
+}
@@ -0,0 +1,79 @@
+package org.vaadin.tokenfield;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps tokens to the keys the client uses for them, like
+ * {@link com.vaadin.server.KeyMapper}, but serialized compactly: only the
+ * token and key of each mapping are written, and the lookup tables are
+ * rebuilt when read.
+ */
+class TokenKeyMapper implements Serializable {
+
+    private static final long serialVersionUID = 3907128409519328214L;
+
+    private transient HashMap<Object, String> keys = new HashMap<Object, String>();
+    private transient HashMap<String, Object> tokens = new HashMap<String, Object>();
+
+    private int lastKey = 0;
+
+    /**
+     * Gets the key of the token, creating one if needed.
+     */
+    String key(Object tokenId) {
+        String key = keys.get(tokenId);
+        if (key == null) {
+            key = Integer.toString(++lastKey, Character.MAX_RADIX);
+            keys.put(tokenId, key);
+            tokens.put(key, tokenId);
+        }
+        return key;
+    }
+
+    /**
+     * @return the token with the given key, or null if there is none
+     */
+    Object get(String key) {
+        return tokens.get(key);
+    }
+
+    void remove(Object tokenId) {
+        String key = keys.remove(tokenId);
+        if (key != null) {
+            tokens.remove(key);
+        }
+    }
+
+    void removeAll() {
+        keys.clear();
+        tokens.clear();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(keys.size());
+        for (Map.Entry<Object, String> e : keys.entrySet()) {
+            out.writeObject(e.getKey());
+            out.writeObject(e.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        keys = new HashMap<Object, String>(size * 2);
+        tokens = new HashMap<String, Object>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Object tokenId = in.readObject();
+            String key = (String) in.readObject();
+            keys.put(tokenId, key);
+            tokens.put(key, tokenId);
+        }
+    }
+}
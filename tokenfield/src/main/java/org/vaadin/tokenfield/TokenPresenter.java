@@ -0,0 +1,50 @@
+package org.vaadin.tokenfield;
+
+import org.vaadin.tokenfield.model.CaptionResolver;
+
+import com.vaadin.server.Resource;
+
+/**
+ * Decides how tokens look: their caption, icon and additional style name.
+ * Used by {@link TokenField} (see
+ * {@link TokenField#setTokenPresenter(TokenPresenter)}) and by
+ * {@link TokenChipRenderer}, so that tokens look the same in a field and in a
+ * Grid.
+ * <p>
+ * Only {@link #getCaption(Object)} must be implemented, so a lambda can be
+ * used. A presenter is a {@link CaptionResolver}, so it can caption the tokens
+ * of a headless {@link org.vaadin.tokenfield.model.TokenModel} as well.
+ * </p>
+ */
+@FunctionalInterface
+public interface TokenPresenter extends CaptionResolver {
+
+    /**
+     * Presents tokens by their string representation, without icons or
+     * styles.
+     */
+    public static final TokenPresenter DEFAULT = String::valueOf;
+
+    /**
+     * Gets the icon of a token; not shown by chips. Defaults to none.
+     *
+     * @param tokenId
+     *            the token
+     * @return the icon, or null for none
+     */
+    public default Resource getIcon(Object tokenId) {
+        return null;
+    }
+
+    /**
+     * Gets the additional style name of a token, e.g
+     * {@link TokenField#STYLE_BUTTON_EMPHAZISED}. Defaults to none.
+     *
+     * @param tokenId
+     *            the token
+     * @return the style name, or null for none
+     */
+    public default String getStyleName(Object tokenId) {
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+package org.vaadin.tokenfield.client.ui;
+
+/**
+ * The markup of token chips, which look like link style buttons. Plain Java,
+ * so that the input widget, the Grid renderer and the read-only label of the
+ * server all render chips with this one builder.
+ */
+public final class TokenChipMarkup {
+
+    public static final String CLASSNAME_CHIP = "tokenfield-chip";
+
+    /**
+     * The attribute holding the key of a removable chip
+     */
+    public static final String ATTR_KEY = "data-key";
+
+    private TokenChipMarkup() {
+    }
+
+    /**
+     * Appends the markup of a chip.
+     *
+     * @param html
+     *            the builder to append to
+     * @param key
+     *            the key of a removable chip, or null for a chip that only
+     *            shows the token
+     * @param caption
+     *            the caption, as text
+     * @param style
+     *            an additional style name, or null
+     */
+    public static void appendChip(StringBuilder html, String key,
+            String caption, String style) {
+        html.append("<div class=\"v-button v-widget link v-button-link ");
+        html.append(CLASSNAME_CHIP);
+        if (style != null) {
+            html.append(" v-button-");
+            appendEscaped(html, style);
+        }
+        if (key != null) {
+            html.append("\" role=\"button\" ").append(ATTR_KEY).append("=\"");
+            appendEscaped(html, key);
+        }
+        html.append("\"><span class=\"v-button-wrap\"><span class=\"v-button-caption\">");
+        appendEscaped(html, caption);
+        html.append(key != null ? " &times;</span></span></div>"
+                : "</span></span></div>");
+    }
+
+    /**
+     * Appends text, escaping the characters that are special in HTML text and
+     * attribute values.
+     *
+     * @param html
+     *            the builder to append to
+     * @param text
+     *            the text, null for none
+     */
+    public static void appendEscaped(StringBuilder html, String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                html.append("&lt;");
+                break;
+            case '>':
+                html.append("&gt;");
+                break;
+            case '&':
+                html.append("&amp;");
+                break;
+            case '"':
+                html.append("&quot;");
+                break;
+            case '\'':
+                html.append("&#39;");
+                break;
+            default:
+                html.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.vaadin.tokenfield.client.ui;
+
+import org.vaadin.tokenfield.TokenChipRenderer;
+
+import com.vaadin.client.connectors.grid.AbstractGridRendererConnector;
+import com.vaadin.client.renderers.Renderer;
+import com.vaadin.shared.ui.Connect;
+
+import elemental.json.JsonValue;
+
+@Connect(TokenChipRenderer.class)
+public class TokenChipRendererConnector extends
+        AbstractGridRendererConnector<JsonValue> {
+
+    @Override
+    public VTokenChipRenderer getRenderer() {
+        return (VTokenChipRenderer) super.getRenderer();
+    }
+
+    @Override
+    protected Renderer<JsonValue> createRenderer() {
+        return new VTokenChipRenderer();
+    }
+
+    @Override
+    public JsonValue decode(JsonValue value) {
+        // rendered as is
+        return value;
+    }
+}
@@ -0,0 +1,100 @@
+package org.vaadin.tokenfield.client.ui;
+
+import org.vaadin.tokenfield.TokenComboBox;
+import org.vaadin.tokenfield.client.ui.VTokenField.DeleteListener;
+import org.vaadin.tokenfield.client.ui.VTokenField.PasteListener;
+import org.vaadin.tokenfield.client.ui.VTokenField.TokenClickListener;
+
+import com.google.gwt.core.client.GWT;
+import com.vaadin.client.ApplicationConnection;
+import com.vaadin.client.UIDL;
+import com.vaadin.client.communication.RpcProxy;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.v7.client.ui.combobox.ComboBoxConnector;
+import com.vaadin.shared.ui.Connect;
+
+@Connect(TokenComboBox.class)
+public class TokenFieldConnector extends ComboBoxConnector {
+
+    private TokenFieldServerRpc rpc = RpcProxy.create(
+            TokenFieldServerRpc.class, this);
+
+    protected boolean after = false;
+
+    @Override
+    protected void init() {
+        getWidget().addListener(new DeleteListener() {
+            public void onDelete(int count) {
+                rpc.deleteTokens(count);
+            }
+        });
+        getWidget().addListener(new TokenClickListener() {
+            public void onTokenClick(String key) {
+                rpc.tokenClick(key);
+            }
+        });
+        getWidget().addListener(new PasteListener() {
+            public void onPaste(String[] tokens) {
+                rpc.addTokens(tokens);
+            }
+        });
+
+    }
+
+    @Override
+    public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
+        VTokenField widget = getWidget();
+        String sentFilter = null;
+        if (isRealUpdate(uidl) && uidl.hasVariable("filter")
+                && widget.isStaleFilterResponse(uidl.getStringVariable("filter"))) {
+            // the suggestions do not match the input anymore; make sure they
+            // are not shown, a request for the current input follows
+            sentFilter = widget.lastFilter;
+            widget.lastFilter = widget.tb.getText();
+        }
+        super.updateFromUIDL(uidl, client);
+        if (sentFilter != null) {
+            widget.lastFilter = sentFilter;
+            widget.waitingForFilteringResponse = false;
+        }
+        if (isRealUpdate(uidl)) {
+            widget.reconcileDeletes();
+            after = uidl.hasAttribute("after");
+            widget.setAfter(after);
+            widget.setFilterDelay(uidl.hasAttribute("filterdelay") ? uidl
+                    .getIntAttribute("filterdelay") : 0);
+            widget.setMinFilterLength(uidl.hasAttribute("minfilterlength") ? uidl
+                    .getIntAttribute("minfilterlength") : 0);
+            widget.setPasteSeparators(uidl.hasAttribute("pasteseparators") ? uidl
+                    .getStringAttribute("pasteseparators") : null);
+            widget.setPasteUnsplit(uidl.hasAttribute("pasteunsplit"));
+        }
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+        if (stateChangeEvent.hasPropertyChanged("tokenKeys")
+                || stateChangeEvent.hasPropertyChanged("tokenCaptions")
+                || stateChangeEvent.hasPropertyChanged("tokenStyles")) {
+            getWidget().setTokens(getState().tokenKeys,
+                    getState().tokenCaptions, getState().tokenStyles);
+        }
+    }
+
+    @Override
+    public TokenFieldState getState() {
+        return (TokenFieldState) super.getState();
+    }
+
+    @Override
+    public VTokenField getWidget() {
+        return (VTokenField) super.getWidget();
+    }
+
+    @Override
+    protected VTokenField createWidget() {
+        return GWT.create(VTokenField.class);
+    }
+
+}
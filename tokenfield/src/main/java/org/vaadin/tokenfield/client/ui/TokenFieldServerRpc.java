@@ -5,4 +5,10 @@ import com.vaadin.shared.communication.ServerRpc;
 public interface TokenFieldServerRpc extends ServerRpc {
 
     public void deleteToken();
+
+    public void deleteTokens(int count);
+
+    public void tokenClick(String key);
+
+    public void addTokens(String[] tokens);
 }
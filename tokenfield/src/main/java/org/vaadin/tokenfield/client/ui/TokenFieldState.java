@@ -0,0 +1,25 @@
+package org.vaadin.tokenfield.client.ui;
+
+import com.vaadin.v7.shared.ui.combobox.ComboBoxState;
+
+public class TokenFieldState extends ComboBoxState {
+
+    /**
+     * Keys of the tokens rendered as chips by the input widget, in token
+     * order; null when the tokens are rendered as separate buttons.
+     */
+    public String[] tokenKeys;
+
+    /**
+     * Chip captions, parallel to {@link #tokenKeys}; the widget adds the
+     * remove mark.
+     */
+    public String[] tokenCaptions;
+
+    /**
+     * Additional chip style names, parallel to {@link #tokenKeys}; an entry
+     * is null if the chip has no additional style, and the whole array is
+     * null if no chip has one.
+     */
+    public String[] tokenStyles;
+}
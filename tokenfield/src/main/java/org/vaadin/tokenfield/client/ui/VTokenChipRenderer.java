@@ -0,0 +1,38 @@
+package org.vaadin.tokenfield.client.ui;
+
+import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.vaadin.client.renderers.Renderer;
+import com.vaadin.client.widget.grid.RendererCellReference;
+
+import elemental.json.JsonArray;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
+
+/**
+ * Renders the chips of a Grid cell, encoded by
+ * {@link org.vaadin.tokenfield.TokenChipRenderer} as an array of captions and
+ * [caption, style] arrays.
+ */
+public class VTokenChipRenderer implements Renderer<JsonValue> {
+
+    public static final String CLASSNAME = "tokenfield-cell";
+
+    public void render(RendererCellReference cell, JsonValue data) {
+        SafeHtmlBuilder sb = new SafeHtmlBuilder();
+        if (data != null && data.getType() == JsonType.ARRAY) {
+            JsonArray chips = (JsonArray) data;
+            for (int i = 0; i < chips.length(); i++) {
+                JsonValue chip = chips.get(i);
+                if (chip.getType() == JsonType.ARRAY) {
+                    JsonArray styled = (JsonArray) chip;
+                    VTokenField.appendChip(sb, null, styled.getString(0),
+                            styled.getString(1));
+                } else {
+                    VTokenField.appendChip(sb, null, chip.asString(), null);
+                }
+            }
+        }
+        cell.getElement().addClassName(CLASSNAME);
+        cell.getElement().setInnerSafeHtml(sb.toSafeHtml());
+    }
+}
@@ -0,0 +1,517 @@
+package org.vaadin.tokenfield.client.ui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+import com.google.gwt.dom.client.Style.Display;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.KeyCodes;
+import com.google.gwt.event.dom.client.KeyDownEvent;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.google.gwt.user.client.Event;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.HTML;
+import com.google.gwt.user.client.ui.TextBox;
+import com.vaadin.v7.client.ui.VFilterSelect;
+
+public class VTokenField extends VFilterSelect {
+
+    public static final String CLASSNAME_CHIPS = "tokenfield-chips";
+    public static final String CLASSNAME_CHIP = TokenChipMarkup.CLASSNAME_CHIP;
+
+    private static final String ATTR_KEY = TokenChipMarkup.ATTR_KEY;
+
+    /**
+     * Deletes (e.g a held backspace) within this many milliseconds are sent
+     * to the server as one
+     */
+    private static final int DELETE_BATCH_DELAY = 100;
+
+    protected boolean after = false;
+
+    protected List<DeleteListener> listeners = new LinkedList<DeleteListener>();
+
+    protected List<TokenClickListener> clickListeners = new LinkedList<TokenClickListener>();
+
+    protected List<PasteListener> pasteListeners = new LinkedList<PasteListener>();
+
+    /**
+     * Pasted text containing any of these characters is split into tokens;
+     * null to handle pasted text as typed.
+     */
+    protected String pasteSeparators;
+
+    /**
+     * Whether pasted text containing separators is sent as is, to be split by
+     * the server
+     */
+    protected boolean pasteUnsplit;
+
+    /**
+     * Milliseconds to wait after the last keystroke before filtering
+     */
+    protected int filterDelay = 0;
+
+    /**
+     * Shorter input is not filtered
+     */
+    protected int minFilterLength = 0;
+
+    private final Timer filterTimer = new Timer() {
+        @Override
+        public void run() {
+            filterOptions(0);
+        }
+    };
+
+    /**
+     * Deletes not yet sent to the server
+     */
+    private int pendingDeletes = 0;
+
+    /**
+     * Deletes have been sent, the tokens hidden for them are shown again when
+     * the server responds (the deleted ones are gone by then)
+     */
+    private boolean awaitingDeleteResponse = false;
+
+    /**
+     * Tokens hidden right away when deleted, before the server has responded
+     */
+    private final List<Element> deletedTokens = new ArrayList<Element>();
+
+    private final Timer deleteTimer = new Timer() {
+        @Override
+        public void run() {
+            flushDeletes();
+        }
+    };
+
+    /**
+     * All token chips are rendered into this one widget; null when the tokens
+     * are rendered as separate buttons.
+     */
+    protected HTML chips;
+
+    public void onKeyDown(KeyDownEvent event) {
+        if (!enabled || readonly) {
+            return;
+        }
+        int kc = event.getNativeKeyCode();
+        if (kc == KeyCodes.KEY_ENTER || kc == KeyCodes.KEY_TAB
+                || kc == KeyCodes.KEY_ESCAPE) {
+            // the input is about to be used or cleared as is
+            filterTimer.cancel();
+        }
+        if (kc == KeyCodes.KEY_BACKSPACE || kc == KeyCodes.KEY_DELETE) {
+            if (event.getSource() instanceof TextBox
+                    && "".equals(((TextBox) event.getSource()).getText())) {
+                if ((kc == KeyCodes.KEY_BACKSPACE && !after)
+                        || (kc == KeyCodes.KEY_DELETE && after)) {
+                    pendingDeletes++;
+                    hideLastToken();
+                    if (!deleteTimer.isRunning()) {
+                        deleteTimer.schedule(DELETE_BATCH_DELAY);
+                    }
+                    return;
+                }
+            }
+        }
+
+        super.onKeyDown(event);
+
+    }
+
+    @Override
+    public void onKeyUp(KeyUpEvent event) {
+        if (!enabled || readonly) {
+            return;
+        }
+        switch (event.getNativeKeyCode()) {
+        case KeyCodes.KEY_ENTER:
+        case KeyCodes.KEY_TAB:
+        case KeyCodes.KEY_SHIFT:
+        case KeyCodes.KEY_CTRL:
+        case KeyCodes.KEY_ALT:
+        case KeyCodes.KEY_DOWN:
+        case KeyCodes.KEY_UP:
+        case KeyCodes.KEY_PAGEDOWN:
+        case KeyCodes.KEY_PAGEUP:
+        case KeyCodes.KEY_ESCAPE:
+            super.onKeyUp(event);
+            return;
+        default:
+            filterTimer.cancel();
+            if (tb.getText().length() < minFilterLength) {
+                suggestionPopup.hide();
+            } else if (filterDelay > 0) {
+                filterTimer.schedule(filterDelay);
+            } else {
+                super.onKeyUp(event);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a filtering response for the given filter is outdated,
+     * i.e the user has changed the input since the request was sent and the
+     * new input has not been sent yet.
+     */
+    public boolean isStaleFilterResponse(String filter) {
+        return waitingForFilteringResponse && filter != null
+                && filter.equals(lastFilter.toLowerCase())
+                && !filter.equals(tb.getText().toLowerCase());
+    }
+
+    private void flushDeletes() {
+        if (pendingDeletes > 0) {
+            int count = pendingDeletes;
+            pendingDeletes = 0;
+            awaitingDeleteResponse = true;
+            fireDeleteListeners(count);
+        }
+    }
+
+    /**
+     * Shows the tokens hidden by deletes again, once the server has responded
+     * to all sent deletes; tokens the server did delete are gone by then, and
+     * those it did not are restored.
+     */
+    public void reconcileDeletes() {
+        if (!awaitingDeleteResponse || pendingDeletes > 0) {
+            return;
+        }
+        awaitingDeleteResponse = false;
+        for (Element e : deletedTokens) {
+            e.getStyle().clearDisplay();
+        }
+        deletedTokens.clear();
+    }
+
+    /*
+     * Hides the token the next delete will remove: the last one. Gives up if
+     * it can not be found reliably, e.g when not all tokens are shown.
+     */
+    private void hideLastToken() {
+        Element token = null;
+        if (chips != null) {
+            token = getLastChildElement(chips.getElement());
+            while (token != null && isHidden(token)) {
+                token = token.getPreviousSiblingElement();
+            }
+        } else {
+            // token buttons are siblings of the input in the layout, possibly
+            // wrapped in slots
+            Element slot = getElement();
+            Element parent = slot.getParentElement();
+            if (parent != null && parent.hasClassName("v-slot")) {
+                slot = parent;
+                parent = slot.getParentElement();
+            }
+            if (parent == null) {
+                return;
+            }
+            Element e = after ? getLastChildElement(parent) : slot
+                    .getPreviousSiblingElement();
+            while (e != null && e != slot
+                    && (isHidden(e) || e.hasClassName("v-spacing"))) {
+                e = e.getPreviousSiblingElement();
+            }
+            if (e != null && e != slot) {
+                Element button = e.hasClassName("v-slot") ? e
+                        .getFirstChildElement() : e;
+                if (button != null && button.hasClassName("v-button")
+                        && !button.hasClassName("v-button-more")) {
+                    token = e;
+                }
+            }
+        }
+        if (token != null) {
+            token.getStyle().setDisplay(Display.NONE);
+            deletedTokens.add(token);
+        }
+    }
+
+    private static Element getLastChildElement(Element parent) {
+        Node node = parent.getLastChild();
+        while (node != null && node.getNodeType() != Node.ELEMENT_NODE) {
+            node = node.getPreviousSibling();
+        }
+        return node == null ? null : Element.as(node);
+    }
+
+    private static boolean isHidden(Element e) {
+        return "none".equals(e.getStyle().getDisplay());
+    }
+
+    @Override
+    protected TextBox createTextBox() {
+        return new TokenTextBox();
+    }
+
+    /*
+     * Called deferred after a paste, when the pasted text is in the input
+     */
+    private void onPaste() {
+        if (!enabled || readonly || pasteSeparators == null) {
+            return;
+        }
+        String text = tb.getText();
+        if (pasteUnsplit) {
+            for (int i = 0; i < text.length(); i++) {
+                if (pasteSeparators.indexOf(text.charAt(i)) >= 0) {
+                    submitPaste(new String[] { text });
+                    return;
+                }
+            }
+            // a single token is handled as typed
+            return;
+        }
+        LinkedHashSet<String> tokens = new LinkedHashSet<String>();
+        boolean separated = false;
+        int start = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean end = i == text.length();
+            if (end || pasteSeparators.indexOf(text.charAt(i)) >= 0) {
+                separated |= !end;
+                String token = text.substring(start, i).trim();
+                if (token.length() > 0) {
+                    tokens.add(token);
+                }
+                start = i + 1;
+            }
+        }
+        if (!separated) {
+            // a single token is handled as typed
+            return;
+        }
+        submitPaste(tokens.toArray(new String[tokens.size()]));
+    }
+
+    private void submitPaste(String[] tokens) {
+        filterTimer.cancel();
+        tb.setText("");
+        suggestionPopup.hide();
+        if (tokens.length > 0) {
+            firePasteListeners(tokens);
+        }
+    }
+
+    public void setPasteSeparators(String pasteSeparators) {
+        this.pasteSeparators = pasteSeparators;
+    }
+
+    public void setPasteUnsplit(boolean pasteUnsplit) {
+        this.pasteUnsplit = pasteUnsplit;
+    }
+
+    public void setFilterDelay(int filterDelay) {
+        this.filterDelay = filterDelay;
+        if (filterDelay == 0) {
+            filterTimer.cancel();
+        }
+    }
+
+    public void setMinFilterLength(int minFilterLength) {
+        this.minFilterLength = minFilterLength;
+    }
+
+    @Override
+    protected void onDetach() {
+        filterTimer.cancel();
+        if (deleteTimer.isRunning()) {
+            deleteTimer.cancel();
+            flushDeletes();
+        }
+        super.onDetach();
+    }
+
+    public void setAfter(boolean after) {
+        if (this.after != after) {
+            this.after = after;
+            placeChips();
+        }
+    }
+
+    /**
+     * Renders the given tokens as chips next to the input, or removes the
+     * chips if keys is null.
+     */
+    public void setTokens(String[] keys, String[] captions, String[] styles) {
+        if (keys == null) {
+            if (chips != null) {
+                chips.removeFromParent();
+                chips = null;
+            }
+            return;
+        }
+        if (chips == null) {
+            chips = new HTML();
+            chips.setStyleName(CLASSNAME_CHIPS);
+            chips.addClickHandler(new ClickHandler() {
+                public void onClick(ClickEvent event) {
+                    onChipsClick(event);
+                }
+            });
+            placeChips();
+        }
+        SafeHtmlBuilder sb = new SafeHtmlBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            appendChip(sb, keys[i], captions[i], styles == null ? null
+                    : styles[i]);
+        }
+        chips.setHTML(sb.toSafeHtml());
+    }
+
+    /**
+     * Appends the markup of a chip, which looks like a link style button; see
+     * {@link TokenChipMarkup}.
+     * 
+     * @param sb
+     *            the builder to append to
+     * @param key
+     *            the key of a removable chip, or null for a chip that only
+     *            shows the token
+     * @param caption
+     *            the caption
+     * @param style
+     *            an additional style name, or null
+     */
+    public static void appendChip(SafeHtmlBuilder sb, String key,
+            String caption, String style) {
+        StringBuilder html = new StringBuilder();
+        TokenChipMarkup.appendChip(html, key, caption, style);
+        sb.appendHtmlConstant(html.toString());
+    }
+
+    private void placeChips() {
+        if (chips == null) {
+            return;
+        }
+        FlowPanel panel = (FlowPanel) getWidget();
+        chips.removeFromParent();
+        if (after) {
+            panel.add(chips);
+        } else {
+            panel.insert(chips, panel.getWidgetIndex(tb));
+        }
+    }
+
+    private void onChipsClick(ClickEvent event) {
+        if (!enabled || readonly) {
+            return;
+        }
+        Element target = Element.as(event.getNativeEvent().getEventTarget());
+        while (target != null && target != chips.getElement()) {
+            String key = target.getAttribute(ATTR_KEY);
+            if (key != null && key.length() > 0) {
+                fireTokenClickListeners(key);
+                return;
+            }
+            target = target.getParentElement();
+        }
+    }
+
+    private void fireDeleteListeners(int count) {
+        for (DeleteListener l : listeners) {
+            l.onDelete(count);
+        }
+    }
+
+    private void firePasteListeners(String[] tokens) {
+        for (PasteListener l : pasteListeners) {
+            l.onPaste(tokens);
+        }
+    }
+
+    private void fireTokenClickListeners(String key) {
+        for (TokenClickListener l : clickListeners) {
+            l.onTokenClick(key);
+        }
+    }
+
+    public void addListener(DeleteListener l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(DeleteListener l) {
+        listeners.remove(l);
+    }
+
+    public void addListener(TokenClickListener l) {
+        clickListeners.add(l);
+    }
+
+    public void removeListener(TokenClickListener l) {
+        clickListeners.remove(l);
+    }
+
+    public void addListener(PasteListener l) {
+        pasteListeners.add(l);
+    }
+
+    public void removeListener(PasteListener l) {
+        pasteListeners.remove(l);
+    }
+
+    public interface DeleteListener {
+        /**
+         * @deprecated implement {@link #onDelete(int)}, which calls this once
+         *             per token by default
+         */
+        @Deprecated
+        public default void onDelete() {
+        }
+
+        /**
+         * @param count
+         *            how many tokens to delete, starting from the last one
+         */
+        public default void onDelete(int count) {
+            for (int i = 0; i < count; i++) {
+                onDelete();
+            }
+        }
+    }
+
+    public interface TokenClickListener {
+        public void onTokenClick(String key);
+    }
+
+    public interface PasteListener {
+        public void onPaste(String[] tokens);
+    }
+
+    /**
+     * Input box that notices when text is pasted into it
+     */
+    protected class TokenTextBox extends FilterSelectTextBox {
+
+        public TokenTextBox() {
+            sinkEvents(Event.ONPASTE);
+        }
+
+        @Override
+        public void onBrowserEvent(Event event) {
+            super.onBrowserEvent(event);
+            if (event.getTypeInt() == Event.ONPASTE) {
+                // the pasted text is in the input only after the event
+                Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+                    public void execute() {
+                        onPaste();
+                    }
+                });
+            }
+        }
+    }
+
+}
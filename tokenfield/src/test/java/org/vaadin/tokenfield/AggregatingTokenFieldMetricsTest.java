@@ -0,0 +1,37 @@
+package org.vaadin.tokenfield;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+/**
+ * One metrics instance aggregates the figures of all sessions, also after
+ * they have been serialized.
+ */
+public class AggregatingTokenFieldMetricsTest {
+
+    @Test
+    public void deserializedMetricsAreShared() throws Exception {
+        AggregatingTokenFieldMetrics metrics = new AggregatingTokenFieldMetrics();
+        metrics.tokensAdded(2, 1000);
+        AggregatingTokenFieldMetrics copy = copy(metrics);
+        assertSame(metrics, copy);
+        copy.tokensAdded(3, 1000);
+        assertEquals(5, metrics.getTokensAdded());
+        assertEquals(2, metrics.getAddLatency().getCount());
+    }
+
+    private static AggregatingTokenFieldMetrics copy(
+            AggregatingTokenFieldMetrics metrics) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).writeObject(metrics);
+        return (AggregatingTokenFieldMetrics) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+}
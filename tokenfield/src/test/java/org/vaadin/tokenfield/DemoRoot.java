@@ -6,6 +6,7 @@ import java.util.Random;
 import java.util.Set;
 
 import org.vaadin.tokenfield.TokenField.InsertPosition;
+import org.vaadin.tokenfield.model.Tokenizer;
 
 import com.vaadin.v7.data.Container;
 import com.vaadin.v7.data.Property.ValueChangeEvent;
@@ -67,7 +68,8 @@ public class DemoRoot extends UI {
 
             {
                 /*
-                 * Interpretes "," as token separator
+                 * Interpretes "," as token separator; quoted tokens may
+                 * contain commas
                  */
 
                 Panel p = new Panel("Comma separated");
@@ -76,32 +78,12 @@ public class DemoRoot extends UI {
                 p.setContent(l);
                 addComponent(p);
 
-                TokenField f = new TokenField() {
-
-                    @Override
-                    protected void onTokenInput(Object tokenId) {
-                        String[] tokens = ((String) tokenId).split(",");
-                        for (String token : tokens) {
-                            token = token.trim();
-                            if (token.length() > 0) {
-                                super.onTokenInput(token);
-                            }
-                        }
-                    }
-
-                    @Override
-                    protected void rememberToken(String tokenId) {
-                        String[] tokens = ((String) tokenId).split(",");
-                        for (String token : tokens) {
-                            token = token.trim();
-                            if (token.length() > 0) {
-                                super.rememberToken(token);
-                            }
-                        }
-                    }
-
-                };
-                f.setInputPrompt("tag, another, yetanother");
+                TokenField f = new TokenField();
+                Tokenizer tokenizer = new Tokenizer(",\n");
+                tokenizer.setQuote('"');
+                // also splits pasted lists, which are added at once
+                f.setTokenizer(tokenizer);
+                f.setInputPrompt("tag, another, \"yet, another\"");
                 l.addComponent(f);
 
             }
@@ -0,0 +1,94 @@
+package org.vaadin.tokenfield;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.HasComponents;
+import com.vaadin.ui.Layout;
+import com.vaadin.v7.ui.HorizontalLayout;
+
+/**
+ * Toggling read-only and the insert position of a field with many tokens must
+ * cause a constant number of hierarchy changes, i.e the token buttons stay
+ * attached and only the input is moved. A hierarchy change is a component
+ * being attached or detached, or a container whose children have to be sent
+ * to the client again.
+ */
+public class HierarchyChangeTest {
+
+    private static final int TOKEN_COUNT = 5000;
+    private static final int MAX_CHANGES = 4;
+
+    @Test
+    public void cssLayout() {
+        check(new CssLayout());
+    }
+
+    @Test
+    public void horizontalLayout() {
+        check(new HorizontalLayout());
+    }
+
+    private static void check(Layout layout) {
+        TestSession session = new TestSession();
+        TokenField field = new TokenField(layout);
+        session.attach(field);
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            tokens.add("token" + i);
+        }
+        field.addTokens(tokens);
+        session.endRoundTrip();
+
+        checkChanges("setReadOnly(true)", session, field,
+                () -> field.setReadOnly(true));
+        checkChanges("setReadOnly(false)", session, field,
+                () -> field.setReadOnly(false));
+        checkChanges("setTokenInsertPosition(AFTER)", session, field,
+                () -> field.setTokenInsertPosition(
+                        TokenField.InsertPosition.AFTER));
+        checkChanges("setTokenInsertPosition(BEFORE)", session, field,
+                () -> field.setTokenInsertPosition(
+                        TokenField.InsertPosition.BEFORE));
+    }
+
+    private static void checkChanges(String operation, TestSession session,
+            TokenField field, Runnable toggle) {
+        // every component that may move
+        List<Component> components = new ArrayList<Component>();
+        components.add(field.cb);
+        for (Component c : field.getLayout()) {
+            if (c != field.cb) {
+                components.add(c);
+            }
+        }
+        int[] attachChanges = new int[1];
+        for (Component c : components) {
+            c.addAttachListener(e -> attachChanges[0]++);
+            c.addDetachListener(e -> attachChanges[0]++);
+        }
+
+        toggle.run();
+
+        int containerChanges = 0;
+        for (ClientConnector c : session.getUI().getConnectorTracker()
+                .getDirtyConnectors()) {
+            if (c instanceof HasComponents) {
+                containerChanges++;
+            }
+        }
+        session.endRoundTrip();
+
+        int changes = attachChanges[0] + containerChanges;
+        assertTrue(operation + " on "
+                + field.getLayout().getClass().getSimpleName() + " caused "
+                + changes + " hierarchy changes", changes <= MAX_CHANGES);
+    }
+}
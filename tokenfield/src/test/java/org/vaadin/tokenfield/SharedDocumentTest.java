@@ -0,0 +1,136 @@
+package org.vaadin.tokenfield;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.vaadin.tokenfield.model.SharedTokenDocument;
+
+/**
+ * Fields sharing a {@link SharedTokenDocument}, each in its own session and
+ * thread, applying each other's changes like push would.
+ */
+public class SharedDocumentTest {
+
+    private static final int EDITOR_COUNT = 200;
+    private static final int EDIT_COUNT = 100;
+    private static final int VOCABULARY_SIZE = 30;
+
+    @Test
+    public void concurrentAddWins() {
+        SharedTokenDocument document = SharedTokenDocument
+                .get("add-wins-" + System.nanoTime());
+        TestSession sessionA = new TestSession();
+        TestSession sessionB = new TestSession();
+        TokenField a = new TokenField();
+        TokenField b = new TokenField();
+        a.setSharedDocument(document);
+        b.setSharedDocument(document);
+        sessionA.attach(a);
+        sessionB.attach(b);
+
+        a.addToken("x");
+        sessionB.runPendingAccess();
+        // concurrently: A removes x, B adds it again
+        a.removeToken("x");
+        b.removeToken("x");
+        b.addToken("x");
+        sessionA.runPendingAccess();
+        sessionB.runPendingAccess();
+
+        assertEquals(Collections.singleton("x"), a.getValue());
+        assertEquals(Collections.singleton("x"), b.getValue());
+        assertEquals(Collections.singleton("x"), document.getTokens());
+    }
+
+    @Test
+    public void firstEditorSeedsDocument() {
+        SharedTokenDocument document = SharedTokenDocument
+                .get("seed-" + System.nanoTime());
+        TokenField a = new TokenField();
+        TokenField b = new TokenField();
+        a.setValue(new LinkedHashSet<Object>(Arrays.asList("x", "y")));
+        b.setValue(new LinkedHashSet<Object>(Arrays.asList("y")));
+        a.setSharedDocument(document);
+        b.setSharedDocument(document);
+        new TestSession().attach(a);
+        new TestSession().attach(b);
+
+        Set<Object> loaded = new HashSet<Object>(Arrays.asList("x", "y"));
+        assertEquals(loaded, a.getValue());
+        assertEquals(loaded, b.getValue());
+        assertEquals(loaded, document.getTokens());
+    }
+
+    @Test
+    public void editorsConverge() throws Exception {
+        SharedTokenDocument document = SharedTokenDocument
+                .get("converge-" + System.nanoTime());
+        CyclicBarrier start = new CyclicBarrier(EDITOR_COUNT);
+        CountDownLatch edited = new CountDownLatch(EDITOR_COUNT);
+        CountDownLatch applied = new CountDownLatch(EDITOR_COUNT);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<TokenField> fields = new ArrayList<TokenField>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < EDITOR_COUNT; i++) {
+            TestSession session = new TestSession();
+            TokenField field = new TokenField();
+            field.setSharedDocument(document);
+            session.attach(field);
+            fields.add(field);
+            String own = "editor" + i;
+            Random random = new Random(i);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    field.addToken(own);
+                    for (int e = 0; e < EDIT_COUNT; e++) {
+                        String token = "token" + random.nextInt(VOCABULARY_SIZE);
+                        if (random.nextBoolean()) {
+                            field.addToken(token);
+                        } else {
+                            field.removeToken(token);
+                        }
+                        if (e % 10 == 0) {
+                            session.runPendingAccess();
+                        }
+                    }
+                    edited.countDown();
+                    // every change has been delivered once all are done
+                    edited.await();
+                    session.runPendingAccess();
+                    field.applySharedDocumentChanges();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    applied.countDown();
+                }
+            }, "editor-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        applied.await();
+        assertNull(failure.get());
+
+        Set<Object> tokens = document.getTokens();
+        for (int i = 0; i < EDITOR_COUNT; i++) {
+            assertEquals("field " + i, tokens, fields.get(i).getValue());
+            assertTrue("editor" + i + " was lost",
+                    tokens.contains("editor" + i));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.vaadin.tokenfield;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.vaadin.v7.shared.ui.combobox.FilteringMode;
+
+public class SuggestionIndexTest {
+
+    @Test
+    public void containsMatchesLikeScanning() {
+        Random random = new Random(4711);
+        List<String> tokens = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int c = random.nextInt(6); c >= 0; c--) {
+                sb.append((char) ('a' + random.nextInt(5)));
+            }
+            tokens.add(sb.append(i % 3 == 0 ? "X" : "").toString());
+        }
+        SuggestionIndex index = new SuggestionIndex(tokens);
+        for (String filter : Arrays.asList("a", "x", "ab", "bx", "abc",
+                "cab", "abca", "eeee", "z")) {
+            List<String> expected = tokens.stream()
+                    .filter(t -> t.toLowerCase(Locale.ROOT).contains(filter))
+                    .distinct().collect(Collectors.toList());
+            assertEquals(filter, expected.size(),
+                    index.count(filter, FilteringMode.CONTAINS));
+            assertEquals(filter, expected, index
+                    .fetch(filter, FilteringMode.CONTAINS, 0, 1000)
+                    .collect(Collectors.toList()));
+            int offset = expected.size() / 2;
+            assertEquals(filter,
+                    expected.subList(offset,
+                            Math.min(offset + 3, expected.size())),
+                    index.fetch(filter, FilteringMode.CONTAINS, offset, 3)
+                            .collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.vaadin.tokenfield;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.UI;
+
+/**
+ * A session without a servlet container, so that components can be attached
+ * to a {@link UI} and exercised in a test. The session is always locked
+ * by the current thread, so it must only be used by one thread; other threads
+ * may only {@link #access(Runnable)} it, which queues the task until the
+ * owning thread calls {@link #runPendingAccess()}.
+ */
+public class TestSession extends VaadinSession {
+
+    private static final long serialVersionUID = -3180744725937062119L;
+
+    private final UI ui = new UI() {
+
+        private static final long serialVersionUID = 5528213904791628394L;
+
+        @Override
+        protected void init(VaadinRequest request) {
+        }
+    };
+
+    private final ConcurrentLinkedQueue<FutureTask<Void>> pendingAccess = new ConcurrentLinkedQueue<FutureTask<Void>>();
+
+    public TestSession() {
+        super(null);
+        ui.setSession(this);
+    }
+
+    @Override
+    public boolean hasLock() {
+        return true;
+    }
+
+    @Override
+    public void lock() {
+    }
+
+    @Override
+    public void unlock() {
+    }
+
+    @Override
+    public Future<Void> access(Runnable runnable) {
+        FutureTask<Void> task = new FutureTask<Void>(runnable, null);
+        pendingAccess.offer(task);
+        return task;
+    }
+
+    /**
+     * Runs the tasks queued by {@link #access(Runnable)}, like the service
+     * does when a request or push ends. A failing task is rethrown.
+     * 
+     * @return the number of tasks run
+     */
+    public int runPendingAccess() {
+        int count = 0;
+        FutureTask<Void> task;
+        while ((task = pendingAccess.poll()) != null) {
+            task.run();
+            count++;
+            try {
+                task.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Access task failed", e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the UI of the session
+     */
+    public UI getUI() {
+        return ui;
+    }
+
+    /**
+     * Sets the content of the UI, attaching the component.
+     * 
+     * @param content
+     *            the component to attach
+     */
+    public void attach(Component content) {
+        ui.setContent(content);
+        endRoundTrip();
+    }
+
+    /**
+     * Does what writing a response does to the connector bookkeeping: dirty
+     * connectors are marked clean and removed connectors are forgotten, so
+     * they do not pile up during a test.
+     */
+    public void endRoundTrip() {
+        ConnectorTracker tracker = ui.getConnectorTracker();
+        tracker.markAllConnectorsClean();
+        tracker.cleanConnectorMap();
+    }
+}
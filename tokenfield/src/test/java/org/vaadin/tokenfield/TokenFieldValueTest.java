@@ -0,0 +1,120 @@
+package org.vaadin.tokenfield;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.vaadin.v7.data.util.ObjectProperty;
+
+/**
+ * The value of a field is its model's view of the tokens.
+ */
+public class TokenFieldValueTest {
+
+    @Test
+    public void valueIsSnapshotOfModel() {
+        TokenField field = new TokenField();
+        assertEquals(Collections.emptySet(), field.getValue());
+        field.addTokens(Arrays.asList("a", "b"));
+        assertEquals(field.getModel().getTokens(), field.getValue());
+        assertSame(field.getValue(), field.getValue());
+        assertEquals("b", field.getModel().getLast());
+    }
+
+    @Test
+    public void valueDoesNotChangeWithField() {
+        TokenField field = new TokenField();
+        field.addTokens(Arrays.asList("a", "b", "c"));
+        List<Object> values = new ArrayList<Object>();
+        field.addValueChangeListener(e -> values.add(e.getProperty()
+                .getValue()));
+        // no ConcurrentModificationException
+        Collection<?> value = (Collection<?>) field.getValue();
+        for (Object tokenId : value) {
+            field.removeToken(tokenId);
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<Object>(
+                value));
+        assertEquals(Collections.emptySet(), field.getValue());
+        assertEquals(3, values.size());
+        assertEquals(new LinkedHashSet<Object>(Arrays.asList("b", "c")),
+                values.get(0));
+        assertEquals(Collections.singleton("c"), values.get(1));
+    }
+
+    @Test
+    public void nullIsNoTokens() {
+        TokenField field = new TokenField();
+        int[] changes = new int[1];
+        field.addValueChangeListener(e -> changes[0]++);
+        field.setValue(null);
+        assertEquals(0, changes[0]);
+        field.addToken("a");
+        field.setValue(null);
+        assertEquals(2, changes[0]);
+        assertTrue(field.getModel().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void dataSourceGetsCopy() {
+        ObjectProperty<Set> property = new ObjectProperty<Set>(
+                new LinkedHashSet<Object>(Arrays.asList("a")), Set.class);
+        TokenField field = new TokenField();
+        field.setPropertyDataSource(property);
+        assertEquals(Collections.singleton("a"), field.getModel().getTokens());
+
+        field.addToken("b");
+        assertEquals(new LinkedHashSet<Object>(Arrays.asList("a", "b")),
+                property.getValue());
+        assertNotSame(field.getModel().getTokens(), property.getValue());
+    }
+
+    @Test
+    public void changesDuringDeletesAreKept() {
+        TokenField field = new TokenField() {
+            @Override
+            protected void onTokenDelete(Object tokenId) {
+                super.onTokenDelete(tokenId);
+                addTokens(Arrays.asList("x"));
+                removeTokens(Arrays.asList("a"));
+            }
+        };
+        field.addTokens(Arrays.asList("a", "b", "c", "d"));
+        int[] changes = new int[1];
+        field.addValueChangeListener(e -> changes[0]++);
+        field.cb.onDelete(2);
+        assertEquals(Arrays.asList("b", "x"),
+                new ArrayList<Object>((Collection<?>) field.getValue()));
+        assertEquals(1, changes[0]);
+    }
+
+    @Test
+    public void valueSetDuringDeletesIsKept() {
+        TokenField field = new TokenField() {
+            @Override
+            protected void onTokenDelete(Object tokenId) {
+                super.onTokenDelete(tokenId);
+                if ("c".equals(tokenId)) {
+                    setValue(new LinkedHashSet<Object>(Arrays.asList("y",
+                            "z")));
+                }
+            }
+        };
+        field.addTokens(Arrays.asList("a", "b", "c", "d"));
+        field.cb.onDelete(2);
+        assertEquals(Arrays.asList("y", "z"),
+                new ArrayList<Object>((Collection<?>) field.getValue()));
+    }
+}
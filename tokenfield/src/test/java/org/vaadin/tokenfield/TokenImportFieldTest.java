@@ -0,0 +1,69 @@
+package org.vaadin.tokenfield;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.vaadin.tokenfield.TokenField.TokenRenderMode;
+import org.vaadin.tokenfield.model.TokenImport;
+import org.vaadin.tokenfield.model.Tokenizer;
+
+/**
+ * Imports into a field are added in bounded batches, each one value change.
+ */
+public class TokenImportFieldTest {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Test
+    public void importsInBatches() throws IOException {
+        TestSession session = new TestSession();
+        TokenField field = new TokenField();
+        field.setTokenRenderMode(TokenRenderMode.CHIPS);
+        session.attach(field);
+        field.addToken("tag0");
+        int[] largestChange = new int[1];
+        field.addTokenSetChangeListener(e -> largestChange[0] = Math.max(
+                largestChange[0], e.getAddedTokens().size()));
+
+        TokenImport tokenImport = new TokenImport(new Tokenizer(",\n"));
+        tokenImport.setBatchSize(BATCH_SIZE);
+        TokenImport.Progress progress = field.importTokens(new StringReader(
+                csv(5000)), tokenImport);
+
+        assertEquals(4999, progress.getImported());
+        assertEquals(1, progress.getDuplicates());
+        assertEquals(5000, field.getModel().size());
+        assertTrue(largestChange[0] <= BATCH_SIZE);
+    }
+
+    @Test
+    public void defaultImportSplitsCsv() throws IOException {
+        TokenField field = new TokenField();
+        field.importTokens(new StringReader("a, \"b, c\"\nd; a"));
+        assertEquals(3, field.getModel().size());
+        assertTrue(field.getModel().contains("b, c"));
+    }
+
+    @Test
+    public void stopsAtLimit() throws IOException {
+        TokenField field = new TokenField();
+        TokenImport tokenImport = new TokenImport(new Tokenizer(","));
+        tokenImport.setMaxTokens(100);
+        TokenImport.Progress progress = field.importTokens(new StringReader(
+                csv(1000)), tokenImport);
+        assertTrue(progress.isLimitReached());
+        assertEquals(100, field.getModel().size());
+    }
+
+    private static String csv(int entries) {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < entries; i++) {
+            csv.append("tag").append(i).append(i % 8 == 7 ? "\n" : ", ");
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package org.vaadin.tokenfield;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+
+/**
+ * With a visible token limit, the token buttons must always be those of the
+ * first tokens, in token order, however the value changes.
+ */
+public class VisibleTokensTest {
+
+    @Test
+    public void buttonsFollowFirstTokens() {
+        TokenField field = new TokenField();
+        field.setVisibleTokenLimit(3);
+        new TestSession().attach(field);
+        field.addTokens(Arrays.asList("a", "b", "c", "d", "e"));
+        assertShown(field, "a", "b", "c");
+        assertEquals(2, field.getHiddenTokenCount());
+
+        field.removeToken("b");
+        assertShown(field, "a", "c", "d");
+        field.removeTokens(Arrays.asList("a", "d"));
+        field.addToken("f");
+        assertShown(field, "c", "e", "f");
+
+        field.showMoreTokens();
+        assertShown(field, "c", "e", "f");
+        assertEquals(0, field.getHiddenTokenCount());
+        field.addTokens(Arrays.asList("g", "h", "i", "j"));
+        assertShown(field, "c", "e", "f", "g", "h", "i");
+        assertEquals(1, field.getHiddenTokenCount());
+    }
+
+    @Test
+    public void lastTokenIsDeleted() {
+        TokenField field = new TokenField();
+        field.setVisibleTokenLimit(2);
+        new TestSession().attach(field);
+        field.addTokens(Arrays.asList("a", "b", "c", "d"));
+        field.cb.onDelete(2);
+        assertEquals(Arrays.asList("a", "b"),
+                new ArrayList<Object>((Collection<?>) field.getValue()));
+        assertShown(field, "a", "b");
+    }
+
+    private static void assertShown(TokenField field, Object... tokenIds) {
+        List<Object> shown = new ArrayList<Object>();
+        for (Component c : field.getLayout()) {
+            if (c instanceof Button && field.buttons.containsValue(c)) {
+                shown.add(((Button) c).getData());
+            }
+        }
+        assertEquals(Arrays.asList(tokenIds), shown);
+        assertEquals(shown, new ArrayList<Object>(field.buttons.keySet()));
+    }
+}
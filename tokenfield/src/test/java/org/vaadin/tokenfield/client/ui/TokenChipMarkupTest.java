@@ -0,0 +1,29 @@
+package org.vaadin.tokenfield.client.ui;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TokenChipMarkupTest {
+
+    @Test
+    public void escapesCaptionStyleAndKey() {
+        StringBuilder html = new StringBuilder();
+        TokenChipMarkup.appendChip(html, "k\"1", "<b>&'", "x\"y");
+        assertEquals("<div class=\"v-button v-widget link v-button-link "
+                + "tokenfield-chip v-button-x&quot;y\" role=\"button\" "
+                + "data-key=\"k&quot;1\"><span class=\"v-button-wrap\">"
+                + "<span class=\"v-button-caption\">&lt;b&gt;&amp;&#39; "
+                + "&times;</span></span></div>", html.toString());
+    }
+
+    @Test
+    public void readOnlyChipHasNoKey() {
+        StringBuilder html = new StringBuilder();
+        TokenChipMarkup.appendChip(html, null, "a", null);
+        assertEquals("<div class=\"v-button v-widget link v-button-link "
+                + "tokenfield-chip\"><span class=\"v-button-wrap\">"
+                + "<span class=\"v-button-caption\">a</span></span></div>",
+                html.toString());
+    }
+}